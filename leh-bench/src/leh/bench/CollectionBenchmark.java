@@ -0,0 +1,78 @@
+package leh.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import leh.util.LEH;
+import leh.util.LEHConfiguration;
+import leh.util.LEHDelegate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Equality, hashing and toString of equal but distinct Lists, Sets and Maps
+ * of LEHAware elements, with Lists compared in order or as unordered bags.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionBenchmark {
+
+	public enum Kind {LIST, SET, MAP}
+
+	@Param({"10", "1000", "100000"})
+	int size;
+
+	@Param({"LIST", "SET", "MAP"})
+	Kind kind;
+
+	@Param({"true", "false"})
+	boolean orderedIterables;
+
+	LEHDelegate leh;
+	Object instance1;
+	Object instance2;
+
+	@Setup
+	public void setUp() {
+		leh = LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(orderedIterables));
+		instance1 = create();
+		instance2 = create();
+	}
+
+	private Object create() {
+		switch(kind){
+			case SET: return Graphs.createFoodSet(size);
+			case MAP: return Graphs.createShipments(size);
+			default: return Graphs.createFoods(size);
+		}
+	}
+
+	@Benchmark
+	public boolean isEqual() {
+		return leh.getEquals(instance1).equals(instance2);
+	}
+
+	@Benchmark
+	public int getHashCode() {
+		return leh.getHashCode(instance1).hashCode();
+	}
+
+	@Benchmark
+	public String getToString() {
+		return leh.getToString(instance1).toString();
+	}
+
+}
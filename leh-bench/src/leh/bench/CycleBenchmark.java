@@ -0,0 +1,64 @@
+package leh.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import leh.example.person.Person;
+import leh.util.LEH;
+import leh.util.LEHDelegate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Circular references of growing length: persons whose spouses form a
+ * cycle, from a person married to themselves (1) to long rings. Traversal
+ * recurs once per person, so rings much longer than 100 exhaust the default
+ * thread stack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CycleBenchmark {
+
+	@Param({"1", "2", "10", "100"})
+	int length;
+
+	LEHDelegate leh;
+	Person instance1;
+	Person instance2;
+
+	@Setup
+	public void setUp() {
+		leh = LEH.getInstance();
+		instance1 = Graphs.createSpouseCycle(length);
+		instance2 = Graphs.createSpouseCycle(length);
+	}
+
+	@Benchmark
+	public boolean isEqual() {
+		return leh.getEquals(instance1).equals(instance2);
+	}
+
+	@Benchmark
+	public int getHashCode() {
+		return leh.getHashCode(instance1).hashCode();
+	}
+
+	@Benchmark
+	public String getToString() {
+		return leh.getToString(instance1).toString();
+	}
+
+}
@@ -0,0 +1,106 @@
+package leh.bench;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import leh.example.Shipment;
+import leh.example.food.Food;
+import leh.example.food.Food.FoodType;
+import leh.example.person.Employee;
+import leh.example.person.Person;
+
+/**
+ * Builds equal but distinct object graphs of the leh.example domain classes,
+ * so each benchmark compares instances that share no references.
+ */
+class Graphs {
+
+	static final Date BIRTH_DATE = new Date(0);
+
+	/**
+	 * An employee with the supplied number of reportees, each referencing the
+	 * employee as their manager, and a spouse with the supplied number of
+	 * favorite foods.
+	 * 
+	 * @param reportees
+	 * @param favoriteFoods
+	 * @return
+	 */
+	static Employee createEmployee(int reportees, int favoriteFoods) {
+		Employee employee = new Employee();
+		employee.setSsn("123456789");
+		employee.setBirthDate(BIRTH_DATE);
+		employee.setSpouse(createPerson("Brian", favoriteFoods));
+		for(int i = 0; i < reportees; i++){
+			Employee reportee = new Employee();
+			reportee.setSsn(String.valueOf(i));
+			reportee.setFirstName("Reportee" + i);
+			reportee.setSalary(i);
+			employee.addReportee(employee, reportee);
+		}
+		return employee;
+	}
+
+	static Person createPerson(String firstName, int favoriteFoods) {
+		Person person = new Person();
+		person.setFirstName(firstName);
+		person.setBirthDate(BIRTH_DATE);
+		person.setFavoriteFoods(createFoods(favoriteFoods));
+		return person;
+	}
+
+	/**
+	 * Persons whose spouses form a cycle of the supplied length, a length of
+	 * 1 being a person married to themselves.
+	 * 
+	 * @param length
+	 * @return
+	 */
+	static Person createSpouseCycle(int length) {
+		Person first = createPerson("Person0", 1);
+		Person last = first;
+		for(int i = 1; i < length; i++){
+			Person next = createPerson("Person" + i, 1);
+			last.setSpouse(next);
+			last = next;
+		}
+		last.setSpouse(first);
+		return first;
+	}
+
+	static List<Food> createFoods(int size) {
+		List<Food> foods = new ArrayList<Food>(size);
+		for(int i = 0; i < size; i++){
+			foods.add(createFood(i));
+		}
+		return foods;
+	}
+
+	static Set<Food> createFoodSet(int size) {
+		return new HashSet<Food>(createFoods(size));
+	}
+
+	static Map<Shipment, Food> createShipments(int size) {
+		Map<Shipment, Food> shipments = new LinkedHashMap<Shipment, Food>();
+		for(int i = 0; i < size; i++){
+			Shipment shipment = new Shipment();
+			shipment.setId(String.valueOf(i));
+			shipments.put(shipment, createFood(i));
+		}
+		return shipments;
+	}
+
+	static Food createFood(int calories) {
+		Food food = new Food();
+		food.setType(calories % 2 == 0 ? FoodType.PIZZA : FoodType.TACO);
+		food.setCalories(calories);
+		food.setSodium(calories * 2);
+		return food;
+	}
+
+}
@@ -0,0 +1,84 @@
+package leh.bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import leh.example.person.Employee;
+import leh.util.LEH;
+import leh.util.LEHDelegate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Each LEHDelegate operation over employee graphs of growing size: size
+ * reportees referencing the employee as their manager, and a spouse with
+ * size favorite foods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectMethodsBenchmark {
+
+	@Param({"1", "10", "100"})
+	int size;
+
+	LEHDelegate leh;
+	Employee instance1;
+	Employee instance2;
+
+	@Setup
+	public void setUp() {
+		leh = LEH.getInstance();
+		instance1 = Graphs.createEmployee(size, size);
+		instance2 = Graphs.createEmployee(size, size);
+	}
+
+	@Benchmark
+	public boolean isEqual() {
+		return leh.getEquals(instance1).equals(instance2);
+	}
+
+	@Benchmark
+	public boolean isEqualNotEqual() {
+		return leh.getEquals(instance1).equals(instance1.getSpouse());
+	}
+
+	@Benchmark
+	public int getHashCode() {
+		return leh.getHashCode(instance1).hashCode();
+	}
+
+	@Benchmark
+	public String getToString() {
+		return leh.getToString(instance1).toString();
+	}
+
+	@Benchmark
+	public Map<String, Object> getIdentity() {
+		return leh.getIdentity(instance1);
+	}
+
+	@Benchmark
+	public int wrapAndHash() {
+		return LEH.getInstance(instance1).hashCode();
+	}
+
+	@Benchmark
+	public int snapshotAndHash() {
+		return LEH.getSnapshot(instance1).hashCode();
+	}
+
+}
@@ -0,0 +1,58 @@
+package leh.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import leh.example.person.Employee;
+import leh.util.LEH;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of every thread wrapping and comparing the same instances
+ * through the shared LEH singleton. Runs one thread per core by default,
+ * compare against other thread counts with -t, ie -Dbench.args="-t 1 Threads".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ThreadsBenchmark {
+
+	Employee instance1;
+	Employee instance2;
+
+	@Setup
+	public void setUp() {
+		instance1 = Graphs.createEmployee(10, 10);
+		instance2 = Graphs.createEmployee(10, 10);
+	}
+
+	@Benchmark
+	public boolean isEqual() {
+		return LEH.getInstance(instance1).equals(instance2);
+	}
+
+	@Benchmark
+	public int getHashCode() {
+		return LEH.getInstance(instance1).hashCode();
+	}
+
+	@Benchmark
+	public String getToString() {
+		return LEH.getInstance(instance1).toString();
+	}
+
+}
@@ -0,0 +1,28 @@
+package leh.example;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.example.Payload, do not edit.
+ */
+public final class Payload_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.example.Payload.class, leh.example.Payload.class, leh.example.Payload.class};
+	private static final String[] NAMES = {"data", "samples", "foods"};
+	private static final int[] ROLES = {1, 1, 1};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return 734290549;
+	}
+
+}
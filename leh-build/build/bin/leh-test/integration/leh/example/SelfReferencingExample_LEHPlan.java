@@ -0,0 +1,28 @@
+package leh.example;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.example.SelfReferencingExample, do not edit.
+ */
+public final class SelfReferencingExample_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.example.SelfReferencingExample.class};
+	private static final String[] NAMES = {"instance"};
+	private static final int[] ROLES = {3};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return 555127988;
+	}
+
+}
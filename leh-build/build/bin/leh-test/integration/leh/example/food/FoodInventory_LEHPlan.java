@@ -0,0 +1,28 @@
+package leh.example.food;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.example.food.FoodInventory, do not edit.
+ */
+public final class FoodInventory_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.example.food.FoodInventory.class, leh.example.food.FoodInventory.class, leh.example.food.Food.class, leh.example.food.Food.class, leh.example.food.Food.class};
+	private static final String[] NAMES = {"cost", "price", "calories", "sodium", "type"};
+	private static final int[] ROLES = {1, 1, 1, 1, 3};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return 1518051754;
+	}
+
+}
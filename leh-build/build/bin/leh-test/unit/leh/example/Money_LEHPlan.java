@@ -0,0 +1,28 @@
+package leh.example;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.example.Money, do not edit.
+ */
+public final class Money_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.example.Money.class, leh.example.Money.class};
+	private static final String[] NAMES = {"amount", "currency"};
+	private static final int[] ROLES = {1, 1};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return -304370054;
+	}
+
+}
@@ -0,0 +1,28 @@
+package leh.example;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.example.Shipment, do not edit.
+ */
+public final class Shipment_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.example.Shipment.class};
+	private static final String[] NAMES = {"id"};
+	private static final int[] ROLES = {3};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return 3386;
+	}
+
+}
@@ -0,0 +1,28 @@
+package leh.example.food;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.example.food.Food, do not edit.
+ */
+public final class Food_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.example.food.Food.class, leh.example.food.Food.class, leh.example.food.Food.class};
+	private static final String[] NAMES = {"calories", "sodium", "type"};
+	private static final int[] ROLES = {1, 1, 3};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return -1201185274;
+	}
+
+}
@@ -0,0 +1,28 @@
+package leh.example.person;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.example.person.Person, do not edit.
+ */
+public final class Person_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.example.person.Person.class, leh.example.person.Person.class, leh.example.person.Person.class, leh.example.person.Person.class, leh.example.person.Person.class, leh.example.person.Person.class, leh.example.person.Person.class, leh.example.person.Person.class, leh.example.person.Person.class};
+	private static final String[] NAMES = {"ssn", "hairColor", "firstName", "lastName", "birthDate", "favoriteFoods", "gender", "netWorth", "spouse"};
+	private static final int[] ROLES = {2, 1, 1, 1, 1, 1, 1, 1, 1};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return -78240897;
+	}
+
+}
@@ -0,0 +1,28 @@
+package leh.util;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.util.LEHStatisticsTest.Unread, do not edit.
+ */
+public final class LEHStatisticsTest$Unread_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.util.LEHStatisticsTest.Unread.class};
+	private static final String[] NAMES = {"value"};
+	private static final int[] ROLES = {1};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return 111972752;
+	}
+
+}
@@ -0,0 +1,28 @@
+package leh.util;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.util.LEHTest.Diamond, do not edit.
+ */
+public final class LEHTest$Diamond_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.util.LEHTest.Diamond.class, leh.util.LEHTest.Diamond.class, leh.util.LEHTest.Diamond.class};
+	private static final String[] NAMES = {"left", "right", "value"};
+	private static final int[] ROLES = {1, 1, 1};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return -1925693061;
+	}
+
+}
@@ -0,0 +1,28 @@
+package leh.util;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.util.LEHTest.Primitives, do not edit.
+ */
+public final class LEHTest$Primitives_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.util.LEHTest.Primitives.class, leh.util.LEHTest.Primitives.class, leh.util.LEHTest.Primitives.class, leh.util.LEHTest.Primitives.class, leh.util.LEHTest.Primitives.class, leh.util.LEHTest.Primitives.class, leh.util.LEHTest.Primitives.class, leh.util.LEHTest.Primitives.class};
+	private static final String[] NAMES = {"z", "b", "c", "s", "i", "j", "f", "d"};
+	private static final int[] ROLES = {1, 1, 1, 1, 1, 1, 1, 1};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return 86780472;
+	}
+
+}
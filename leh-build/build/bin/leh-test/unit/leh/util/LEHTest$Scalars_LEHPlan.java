@@ -0,0 +1,28 @@
+package leh.util;
+
+/**
+ * Generated by leh.apt.LEHPlanProcessor for leh.util.LEHTest.Scalars, do not edit.
+ */
+public final class LEHTest$Scalars_LEHPlan implements leh.util.LEHPlan {
+
+	private static final Class<?>[] DECLARING_CLASSES = {leh.util.LEHTest.Scalars.class, leh.util.LEHTest.Scalars.class, leh.util.LEHTest.Scalars.class};
+	private static final String[] NAMES = {"first", "second", "third"};
+	private static final int[] ROLES = {1, 1, 1};
+
+	public Class<?>[] getDeclaringClasses() {
+		return DECLARING_CLASSES.clone();
+	}
+
+	public String[] getNames() {
+		return NAMES.clone();
+	}
+
+	public int[] getRoles() {
+		return ROLES.clone();
+	}
+
+	public int getFingerprint() {
+		return 1231432322;
+	}
+
+}
@@ -0,0 +1,25 @@
+package leh.example;
+
+import leh.annotations.Immutable;
+import leh.util.LEHAware;
+
+@Immutable
+public class Money implements LEHAware {
+
+	private final long amount;
+	private final String currency;
+	
+	public Money(long amount, String currency) {
+		this.amount = amount;
+		this.currency = currency;
+	}
+
+	public long getAmount() {
+		return amount;
+	}
+
+	public String getCurrency() {
+		return currency;
+	}
+	
+}
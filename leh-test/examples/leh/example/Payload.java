@@ -0,0 +1,36 @@
+package leh.example;
+
+import leh.example.food.Food;
+import leh.util.LEHAware;
+
+public class Payload implements LEHAware {
+
+	private byte[] data;
+	private double[] samples;
+	private Food[] foods;
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public void setData(byte[] data) {
+		this.data = data;
+	}
+
+	public double[] getSamples() {
+		return samples;
+	}
+
+	public void setSamples(double[] samples) {
+		this.samples = samples;
+	}
+
+	public Food[] getFoods() {
+		return foods;
+	}
+
+	public void setFoods(Food[] foods) {
+		this.foods = foods;
+	}
+	
+}
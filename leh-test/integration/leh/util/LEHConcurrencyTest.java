@@ -0,0 +1,193 @@
+package leh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import leh.example.Money;
+import leh.example.food.Food;
+import leh.example.food.Food.FoodType;
+import leh.example.person.Employee;
+import leh.example.person.Person;
+
+import org.junit.Test;
+
+public class LEHConcurrencyTest {
+
+	static final int THREADS = 8;
+	static final int OPERATIONS_PER_THREAD = 2000;
+	static final int SCALING_ROUNDS = 5;
+	static final int SCALING_OPERATIONS = 20000;
+
+	/*
+	 * Every thread evaluates the same instances at once, through wrappers,
+	 * snapshots and unordered delegates, and must observe exactly the results
+	 * computed on a single thread.
+	 */
+	@Test
+	public void testConcurrentResultsMatchSingleThreadedResults() throws Exception {
+		final LEHDelegate unordered = LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(false));
+		final Employee instance1 = createEmployee("Brian");
+		final Employee instance2 = createEmployee("Brian");
+		final Employee different = createEmployee("Brad");
+		final Money money = new Money(1, "USD");
+		final int expectedHashCode = LEH.getInstance().getHashCode(instance1).hashCode();
+		final int expectedUnorderedHashCode = unordered.getHashCode(instance1).hashCode();
+		final int expectedMoneyHashCode = LEH.getInstance(new Money(1, "USD")).hashCode();
+		final String expectedToString = LEH.getInstance(instance1).toString();
+		assertEquals(expectedHashCode, LEH.getInstance(instance2).hashCode());
+		assertTrue(LEH.getInstance(instance1).equals(instance2));
+		assertFalse(LEH.getInstance(instance1).equals(different));
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for(int i = 0; i < THREADS; i++){
+				results.add(executor.submit(new Callable<String>() {
+					public String call() throws Exception {
+						start.await();
+						for(int j = 0; j < OPERATIONS_PER_THREAD; j++){
+							Wrapper wrapped = j % 2 == 0 ? LEH.getInstance(instance1) : LEH.getSnapshot(instance1);
+							if(!wrapped.equals(instance2)){
+								return "equal instances compared unequal";
+							}
+							if(wrapped.equals(different)){
+								return "unequal instances compared equal";
+							}
+							if(wrapped.hashCode() != expectedHashCode){
+								return "hashCode " + wrapped.hashCode() + " expected " + expectedHashCode;
+							}
+							if(unordered.getHashCode(instance2).hashCode() != expectedUnorderedHashCode){
+								return "unordered hashCode differed";
+							}
+							if(LEH.getInstance(money).hashCode() != expectedMoneyHashCode){
+								return "memoized hashCode differed";
+							}
+							if(!expectedToString.equals(wrapped.toString())){
+								return "toString " + wrapped + " expected " + expectedToString;
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			start.countDown();
+			for(Future<String> result : results){
+				// rethrows anything thrown while evaluating
+				assertNull(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/*
+	 * Once plans are cached evaluating takes no locks, so throughput grows
+	 * with threads while there are processors to run them: threads each doing
+	 * as much work as a single thread alone must finish at least one and a
+	 * half times (or a third of the threads times) sooner than they would one
+	 * after another. Skipped with a single processor, and timed as the best
+	 * of several rounds to tolerate noise. Detailed throughput is measured by
+	 * ThreadsBenchmark in leh-bench.
+	 */
+	@Test
+	public void testThroughputScalesWithThreads() throws Exception {
+		int threads = Math.min(THREADS, Runtime.getRuntime().availableProcessors());
+		assumeTrue(threads > 1);
+		Employee instance1 = createEmployee("Brian");
+		Employee instance2 = createEmployee("Brian");
+		long single = Long.MAX_VALUE;
+		long multiple = Long.MAX_VALUE;
+		for(int round = 0; round < SCALING_ROUNDS; round++){
+			single = Math.min(single, time(1, instance1, instance2));
+			multiple = Math.min(multiple, time(threads, instance1, instance2));
+		}
+		double speedup = (double)threads * single / multiple;
+		assertTrue("speedup of " + speedup + " with " + threads + " threads", speedup >= Math.max(1.5, threads / 3.0));
+	}
+
+	/**
+	 * Returns the nanoseconds taken by the supplied number of threads to each
+	 * compare and hash the instances SCALING_OPERATIONS times at once.
+	 * 
+	 * @param threads
+	 * @param instance1
+	 * @param instance2
+	 * @return
+	 * @throws Exception
+	 */
+	private long time(int threads, final Employee instance1, final Employee instance2) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for(int i = 0; i < threads; i++){
+				results.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						start.await();
+						boolean equal = true;
+						for(int j = 0; j < SCALING_OPERATIONS; j++){
+							equal &= LEH.getInstance(instance1).equals(instance2) && 
+									LEH.getInstance(instance1).hashCode() == LEH.getInstance(instance2).hashCode();
+						}
+						return Boolean.valueOf(equal);
+					}
+				}));
+			}
+			long started = System.nanoTime();
+			start.countDown();
+			for(Future<Boolean> result : results){
+				assertTrue(result.get().booleanValue());
+			}
+			return System.nanoTime() - started;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testInstanceIsSharedAcrossThreads() throws Exception {
+		final LEHDelegate delegate = LEH.getInstance();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<LEHDelegate>> delegates = new ArrayList<Future<LEHDelegate>>();
+			for(int i = 0; i < 16; i++){
+				delegates.add(executor.submit(new Callable<LEHDelegate>() {
+					public LEHDelegate call() throws Exception {
+						return LEH.getInstance();
+					}
+				}));
+			}
+			for(Future<LEHDelegate> future : delegates){
+				assertSame(delegate, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private Employee createEmployee(String spouseName) {
+		Employee person = new Employee();
+		person.setSsn("123456789");
+		Person spouse = new Person();
+		Food food = new Food();
+		food.setType(FoodType.PIZZA);
+		spouse.setFavoriteFoods(Arrays.asList(food));
+		spouse.setFirstName(spouseName);
+		person.setSpouse(spouse);
+		return person;
+	}
+
+}
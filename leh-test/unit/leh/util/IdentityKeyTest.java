@@ -0,0 +1,92 @@
+package leh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import leh.example.SelfReferencingExample;
+import leh.example.person.Employee;
+import leh.example.person.Person;
+
+import org.junit.Test;
+
+public class IdentityKeyTest {
+
+	@Test
+	public void testKeysOfSiblingsAreEqual() throws Exception {
+		IdentityKey key = LEH.getInstance().getIdentityKey(createPerson("1", "existing"));
+		IdentityKey sibling = LEH.getInstance().getIdentityKey(createPerson("1", "incoming"));
+		assertEquals(key, sibling);
+		assertEquals(key.hashCode(), sibling.hashCode());
+		assertEquals(key, LEH.getInstance().getIdentityKey(LEH.getInstance(createPerson("1", "wrapped"))));
+		assertEquals(key, LEH.getInstance().getIdentityKey(LEH.getSnapshot(createPerson("1", "snapshot"))));
+		assertFalse(key.equals(LEH.getInstance().getIdentityKey(createPerson("2", "existing"))));
+		assertFalse(key.equals(LEH.getInstance().getIdentityKey(createPerson(null, "existing"))));
+	}
+
+	@Test
+	public void testKeysHoldIdentityValuesByName() throws Exception {
+		Employee employee = new Employee();
+		employee.setSsn("1");
+		employee.setEmployeeId("e1");
+		IdentityKey key = LEH.getInstance().getIdentityKey(employee);
+		assertEquals(2, key.size());
+		Map<String, Object> values = new HashMap<String, Object>();
+		for(int i = 0; i < key.size(); i++){
+			values.put(key.getName(i), key.getValue(i));
+		}
+		assertEquals("1", values.get("ssn"));
+		assertEquals("e1", values.get("employeeId"));
+		assertEquals(0, LEH.getInstance().getIdentityKey(null).size());
+		assertEquals(0, LEH.getInstance().getIdentityKey("not LEHAware").size());
+	}
+
+	@Test
+	public void testKeysOfAClassShareFieldNames() throws Exception {
+		IdentityKey key1 = LEH.getInstance().getIdentityKey(createPerson("1", "first"));
+		IdentityKey key2 = LEH.getInstance().getIdentityKey(createPerson("2", "second"));
+		assertSame(key1.getName(0), key2.getName(0));
+		assertEquals("{ssn=1}", key1.toString());
+	}
+
+	@Test
+	public void testKeysAreUsableInHashedCollections() throws Exception {
+		Map<IdentityKey, Person> people = new ConcurrentHashMap<IdentityKey, Person>();
+		for(int i = 0; i < 1000; i++){
+			Person person = createPerson(String.valueOf(i), "existing");
+			people.put(LEH.getInstance().getIdentityKey(person), person);
+		}
+		assertEquals(1000, people.size());
+		assertEquals("existing", people.get(LEH.getInstance().getIdentityKey(createPerson("500", "incoming"))).getFirstName());
+	}
+
+	@Test
+	public void testLogicalIdentityValuesAreComparedLogically() throws Exception {
+		SelfReferencingExample example1 = new SelfReferencingExample();
+		example1.instance = createPerson("1", "first");
+		SelfReferencingExample example2 = new SelfReferencingExample();
+		example2.instance = createPerson("1", "first");
+		IdentityKey key1 = LEH.getInstance().getIdentityKey(example1);
+		IdentityKey key2 = LEH.getInstance().getIdentityKey(example2);
+		assertEquals(key1, key2);
+		assertEquals(key1.hashCode(), key2.hashCode());
+		example2.instance = Arrays.asList(createPerson("1", "first"));
+		example1.instance = Arrays.asList(createPerson("1", "first"));
+		assertEquals(LEH.getInstance().getIdentityKey(example1), LEH.getInstance().getIdentityKey(example2));
+		example2.instance = Arrays.asList(createPerson("1", "second"));
+		assertFalse(LEH.getInstance().getIdentityKey(example1).equals(LEH.getInstance().getIdentityKey(example2)));
+	}
+
+	private Person createPerson(String ssn, String firstName) {
+		Person person = new Person();
+		person.setSsn(ssn);
+		person.setFirstName(firstName);
+		return person;
+	}
+
+}
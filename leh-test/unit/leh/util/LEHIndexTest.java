@@ -0,0 +1,87 @@
+package leh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import leh.example.person.Employee;
+import leh.example.person.Person;
+
+import org.junit.Test;
+
+public class LEHIndexTest {
+
+	@Test
+	public void testFindsSiblingsByIdentity() throws Exception {
+		List<Person> people = new ArrayList<Person>();
+		for(int i = 0; i < 1000; i++){
+			people.add(createPerson(String.valueOf(i), "existing"));
+		}
+		LEHIndex<Person> index = new LEHIndex<Person>(people);
+		assertEquals(1000, index.size());
+		Person incoming = createPerson("500", "incoming");
+		assertSame(people.get(500), index.get(incoming));
+		assertSame(people.get(500), index.get(LEH.getInstance(incoming)));
+		assertSame(people.get(500), index.get(LEH.getSnapshot(incoming)));
+		assertTrue(index.contains(incoming));
+		assertNull(index.get(createPerson("1000", "incoming")));
+	}
+	
+	@Test
+	public void testAddAndRemove() throws Exception {
+		LEHIndex<Person> index = new LEHIndex<Person>();
+		Person existing = createPerson("1", "existing");
+		Person incoming = createPerson("1", "incoming");
+		assertNull(index.add(existing));
+		assertSame(existing, index.add(incoming));
+		assertEquals(1, index.size());
+		assertSame(incoming, index.get(existing));
+		assertSame(incoming, index.remove(existing));
+		assertFalse(index.contains(incoming));
+		assertEquals(0, index.size());
+	}
+	
+	@Test
+	public void testIdentitiesOfNullValues() throws Exception {
+		LEHIndex<Person> index = new LEHIndex<Person>();
+		Person person = createPerson(null, "unidentified");
+		index.add(person);
+		assertSame(person, index.get(createPerson(null, "other")));
+	}
+	
+	@Test
+	public void testSubclassIdentitiesIncludeInheritedFields() throws Exception {
+		LEHIndex<Employee> index = new LEHIndex<Employee>();
+		Employee employee = new Employee();
+		employee.setSsn("1");
+		employee.setEmployeeId("e1");
+		index.add(employee);
+		Employee other = new Employee();
+		other.setSsn("1");
+		assertNull(index.get(other));
+		other.setEmployeeId("e1");
+		assertSame(employee, index.get(other));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInstancesWithoutIdentitiesCannotBeIndexed() throws Exception {
+		new LEHIndex<Object>().add(new Unidentified());
+	}
+	
+	static class Unidentified implements LEHAware {
+		String value;
+	}
+	
+	private Person createPerson(String ssn, String firstName) {
+		Person person = new Person();
+		person.setSsn(ssn);
+		person.setFirstName(firstName);
+		return person;
+	}
+	
+}
@@ -0,0 +1,120 @@
+package leh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import leh.example.person.Person;
+import leh.util.LEHSetTest.CollidingDelegate;
+
+import org.junit.Test;
+
+public class LEHMapTest {
+
+	@Test
+	public void testKeysAreComparedLogically() throws Exception {
+		Map<Person, Integer> map = new LEHMap<Person, Integer>();
+		assertNull(map.put(createPerson("1", "first"), 1));
+		assertEquals(Integer.valueOf(1), map.put(createPerson("2", "first"), 2));
+		assertNull(map.put(createPerson("1", "second"), 3));
+		assertEquals(2, map.size());
+		assertEquals(Integer.valueOf(2), map.get(createPerson("3", "first")));
+		assertEquals(Integer.valueOf(2), map.get(LEH.getInstance(createPerson("3", "first"))));
+		assertEquals(Integer.valueOf(2), map.get(LEH.getSnapshot(createPerson("3", "first"))));
+		assertTrue(map.containsKey(createPerson("3", "second")));
+		assertNull(map.get(createPerson("1", "third")));
+		assertEquals(Integer.valueOf(3), map.remove(createPerson("4", "second")));
+		assertNull(map.remove(createPerson("4", "second")));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testHoldsManyEntries() throws Exception {
+		Map<Person, Integer> map = new LEHMap<Person, Integer>(new CollidingDelegate(8), 0);
+		for(int i = 0; i < 1000; i++){
+			assertNull(map.put(createPerson(null, String.valueOf(i)), i));
+		}
+		assertEquals(1000, map.size());
+		for(int i = 0; i < 1000; i += 2){
+			assertEquals(Integer.valueOf(i), map.remove(createPerson(null, String.valueOf(i))));
+		}
+		assertEquals(500, map.size());
+		for(int i = 0; i < 1000; i++){
+			assertEquals(i % 2 == 1 ? Integer.valueOf(i) : null, map.get(createPerson(null, String.valueOf(i))));
+		}
+	}
+
+	@Test
+	public void testEntriesAreViewsWhileIterating() throws Exception {
+		Map<Person, Integer> map = new LEHMap<Person, Integer>(new CollidingDelegate(4), 0);
+		for(int i = 0; i < 1000; i++){
+			map.put(createPerson(null, String.valueOf(i)), i);
+		}
+		Set<Integer> visited = new HashSet<Integer>();
+		Iterator<Entry<Person, Integer>> iterator = map.entrySet().iterator();
+		while(iterator.hasNext()){
+			Entry<Person, Integer> entry = iterator.next();
+			assertTrue(visited.add(entry.getValue()));
+			if(entry.getValue() % 3 != 0){
+				iterator.remove();
+			}else{
+				entry.setValue(-entry.getValue());
+			}
+		}
+		assertEquals(1000, visited.size());
+		assertEquals(334, map.size());
+		for(int i = 0; i < 1000; i++){
+			assertEquals(i % 3 == 0 ? Integer.valueOf(-i) : null, map.get(createPerson(null, String.valueOf(i))));
+		}
+		assertTrue(map.keySet().remove(createPerson(null, "3")));
+		assertFalse(map.keySet().contains(createPerson(null, "3")));
+		assertTrue(map.values().contains(-6));
+		assertEquals(333, map.size());
+	}
+
+	@Test
+	public void testNullKeysAndValues() throws Exception {
+		Map<Object, Object> map = new LEHMap<Object, Object>();
+		assertNull(map.put(null, "null"));
+		assertNull(map.put("null value", null));
+		assertEquals("null", map.get(null));
+		assertTrue(map.containsKey("null value"));
+		assertEquals("null", map.remove(null));
+		assertFalse(map.containsKey(null));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testEqualsAndHashCode() throws Exception {
+		Map<Person, Integer> map = new HashMap<Person, Integer>();
+		for(int i = 0; i < 100; i++){
+			map.put(createPerson(null, String.valueOf(i)), i);
+		}
+		Map<Person, Integer> map1 = new LEHMap<Person, Integer>(map);
+		Map<Person, Integer> map2 = new LEHMap<Person, Integer>();
+		for(int i = 99; i >= 0; i--){
+			map2.put(createPerson(null, String.valueOf(i)), i);
+		}
+		assertEquals(map1, map2);
+		assertEquals(map1.hashCode(), map2.hashCode());
+		assertEquals(map1.entrySet(), map2.entrySet());
+		map2.put(createPerson(null, "0"), -1);
+		assertFalse(map1.equals(map2));
+	}
+
+	private Person createPerson(String ssn, String firstName) {
+		Person person = new Person();
+		person.setSsn(ssn);
+		person.setFirstName(firstName);
+		return person;
+	}
+
+}
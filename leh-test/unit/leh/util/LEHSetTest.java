@@ -0,0 +1,201 @@
+package leh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import leh.example.food.Food;
+import leh.example.food.Food.FoodType;
+import leh.example.person.Person;
+
+import org.junit.Test;
+
+public class LEHSetTest {
+
+	@Test
+	public void testHoldsLogicallyEqualInstancesOnce() throws Exception {
+		Set<Person> people = new LEHSet<Person>();
+		assertTrue(people.add(createPerson("1", "first")));
+		assertFalse(people.add(createPerson("2", "first")));
+		assertTrue(people.add(createPerson("1", "second")));
+		assertEquals(2, people.size());
+		assertTrue(people.contains(createPerson("3", "second")));
+		assertTrue(people.contains(LEH.getInstance(createPerson("3", "second"))));
+		assertTrue(people.contains(LEH.getSnapshot(createPerson("3", "second"))));
+		assertFalse(people.contains(createPerson("1", "third")));
+		assertTrue(people.remove(createPerson("4", "first")));
+		assertFalse(people.remove(createPerson("4", "first")));
+		assertEquals(1, people.size());
+	}
+
+	@Test
+	public void testHoldsManyInstances() throws Exception {
+		Set<Person> people = new LEHSet<Person>();
+		for(int i = 0; i < 10000; i++){
+			assertTrue(people.add(createPerson(null, String.valueOf(i))));
+		}
+		for(int i = 0; i < 10000; i++){
+			assertFalse(people.add(createPerson(null, String.valueOf(i))));
+		}
+		assertEquals(10000, people.size());
+		for(int i = 0; i < 10000; i += 2){
+			assertTrue(people.remove(createPerson(null, String.valueOf(i))));
+		}
+		assertEquals(5000, people.size());
+		for(int i = 0; i < 10000; i++){
+			assertEquals(i % 2 == 1, people.contains(createPerson(null, String.valueOf(i))));
+		}
+	}
+
+	@Test
+	public void testIteratorVisitsEachInstanceOnceWhileRemoving() throws Exception {
+		Set<Person> people = new LEHSet<Person>(new CollidingDelegate(4));
+		for(int i = 0; i < 1000; i++){
+			people.add(createPerson(null, String.valueOf(i)));
+		}
+		Set<String> visited = new HashSet<String>();
+		Iterator<Person> iterator = people.iterator();
+		while(iterator.hasNext()){
+			Person person = iterator.next();
+			assertTrue(visited.add(person.getFirstName()));
+			if(Integer.parseInt(person.getFirstName()) % 3 != 0){
+				iterator.remove();
+			}
+		}
+		assertEquals(1000, visited.size());
+		assertEquals(334, people.size());
+		for(int i = 0; i < 1000; i++){
+			assertEquals(i % 3 == 0, people.contains(createPerson(null, String.valueOf(i))));
+		}
+	}
+
+	@Test
+	public void testNullAndNonLEHAwareValues() throws Exception {
+		Set<Object> values = new LEHSet<Object>();
+		assertTrue(values.add(null));
+		assertFalse(values.add(null));
+		assertTrue(values.add("value"));
+		assertTrue(values.add(createFood(FoodType.PIZZA)));
+		assertTrue(values.contains(null));
+		assertTrue(values.contains("value"));
+		assertTrue(values.contains(createFood(FoodType.PIZZA)));
+		assertFalse(values.contains(createFood(FoodType.TACO)));
+		assertTrue(values.remove(null));
+		assertFalse(values.contains(null));
+		assertEquals(2, values.size());
+	}
+
+	@Test
+	public void testEqualsAndHashCode() throws Exception {
+		List<Person> people = new ArrayList<Person>();
+		for(int i = 0; i < 100; i++){
+			people.add(createPerson(null, String.valueOf(i)));
+		}
+		Set<Person> set1 = new LEHSet<Person>(people);
+		List<Person> copies = new ArrayList<Person>();
+		for(int i = 99; i >= 0; i--){
+			copies.add(createPerson(null, String.valueOf(i)));
+		}
+		Set<Person> set2 = new LEHSet<Person>(copies);
+		assertEquals(set1, set2);
+		assertEquals(set1.hashCode(), set2.hashCode());
+		set2.remove(createPerson(null, "0"));
+		assertFalse(set1.equals(set2));
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testIteratorFailsFastOnModification() throws Exception {
+		Set<Person> people = new LEHSet<Person>();
+		people.add(createPerson(null, "first"));
+		people.add(createPerson(null, "second"));
+		Iterator<Person> iterator = people.iterator();
+		iterator.next();
+		people.add(createPerson(null, "third"));
+		iterator.next();
+	}
+
+	/**
+	 * Hashes every instance to one of few values homed at the end of the
+	 * table, so probes collide and wrap around to its start, and removals
+	 * shift keys back across the wrap.
+	 */
+	static class CollidingDelegate implements LEHDelegate {
+
+		final LEHDelegate leh = LEH.getInstance();
+		final int hashCodes;
+
+		CollidingDelegate(int hashCodes) {
+			this.hashCodes = hashCodes;
+		}
+
+		public Object getHashCode(Object instance) {
+			final int hashCode = 2040 + Math.abs(leh.getHashCode(instance).hashCode() % hashCodes);
+			return new Object() {
+				@Override
+				public int hashCode() {
+					return hashCode;
+				}
+			};
+		}
+
+		public Object getEquals(Object instance) {
+			return leh.getEquals(instance);
+		}
+
+		public Wrapper getInstance(Object instance) {
+			return leh.getInstance(instance);
+		}
+
+		public Wrapper getSnapshot(Object instance) {
+			return leh.getSnapshot(instance);
+		}
+
+		public Object getToString(Object instance) {
+			return leh.getToString(instance);
+		}
+
+		public <A extends Appendable> A appendToString(Object instance, A appendable) throws IOException {
+			return leh.appendToString(instance, appendable);
+		}
+
+		public Iterable<String> getDiff(Object instance1, Object instance2) {
+			return leh.getDiff(instance1, instance2);
+		}
+
+		public Iterable<String> getDiff(Object instance1, Object instance2, int maxDifferences, int maxDepth) {
+			return leh.getDiff(instance1, instance2, maxDifferences, maxDepth);
+		}
+
+		public Map<String, Object> getIdentity(Object instance) {
+			return leh.getIdentity(instance);
+		}
+
+		public IdentityKey getIdentityKey(Object instance) {
+			return leh.getIdentityKey(instance);
+		}
+
+	}
+
+	private Food createFood(FoodType type) {
+		Food food = new Food();
+		food.setType(type);
+		return food;
+	}
+
+	private Person createPerson(String ssn, String firstName) {
+		Person person = new Person();
+		person.setSsn(ssn);
+		person.setFirstName(firstName);
+		return person;
+	}
+
+}
@@ -0,0 +1,138 @@
+package leh.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.ObjectName;
+
+import leh.example.SelfReferencingExample;
+import leh.example.food.Food;
+import leh.example.food.Food.FoodType;
+import leh.example.person.Person;
+import leh.util.LEHMetrics.Operation;
+
+import org.junit.Test;
+
+public class LEHStatisticsTest {
+
+	LEHStatistics statistics = new LEHStatistics();
+	LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withMetrics(statistics));
+	
+	@Test
+	public void testRecordsEachOperation() throws Exception {
+		Person person1 = createPerson();
+		Person person2 = createPerson();
+		assertTrue(leh.getEquals(person1).equals(person2));
+		leh.getHashCode(person1).hashCode();
+		leh.getHashCode(person1).hashCode();
+		leh.getToString(person1).toString();
+		leh.getIdentity(person1);
+		assertEquals(1, statistics.getCalls(Person.class, Operation.EQUALS));
+		assertEquals(2, statistics.getCalls(Person.class, Operation.HASH_CODE));
+		assertEquals(1, statistics.getCalls(Person.class, Operation.TO_STRING));
+		assertEquals(1, statistics.getCalls(Person.class, Operation.IDENTITY));
+		assertEquals(5, statistics.getCalls());
+		assertEquals(0, statistics.getCalls(Food.class, Operation.EQUALS));
+		int personFields = ClassPlan.get(Person.class).equalsFields.length;
+		int foodFields = ClassPlan.get(Food.class).equalsFields.length;
+		assertEquals(personFields + foodFields, statistics.getFieldsRead(Person.class, Operation.EQUALS));
+		assertEquals(2 * (personFields + foodFields), statistics.getFieldsRead(Person.class, Operation.HASH_CODE));
+		assertEquals(2, statistics.getMaxDepth(Person.class, Operation.EQUALS));
+		assertEquals(2, statistics.getMaxDepth(Person.class, Operation.TO_STRING));
+		assertEquals(2, statistics.getMaxVisited(Person.class, Operation.HASH_CODE));
+		assertEquals(0, statistics.getCycles(Person.class, Operation.EQUALS));
+		assertTrue(statistics.getLatencyPercentile(Person.class, Operation.EQUALS, 0.99) > 0);
+		assertTrue(statistics.getTotalNanos(Person.class, Operation.EQUALS) > 0);
+	}
+	
+	@Test
+	public void testRecordsCycles() throws Exception {
+		SelfReferencingExample instance = new SelfReferencingExample();
+		instance.instance = instance;
+		leh.getHashCode(instance).hashCode();
+		assertEquals(1, statistics.getCycles(SelfReferencingExample.class, Operation.HASH_CODE));
+		assertEquals(1, statistics.getMaxVisited(SelfReferencingExample.class, Operation.HASH_CODE));
+	}
+	
+	@Test
+	public void testRecordsDepthApartFromInstancesVisited() throws Exception {
+		Person person = createPerson();
+		Food food = new Food();
+		food.setType(FoodType.TACO);
+		person.setFavoriteFoods(Arrays.asList(person.getFavoriteFoods().get(0), food, new Food()));
+		leh.getHashCode(person).hashCode();
+		assertEquals(2, statistics.getMaxDepth(Person.class, Operation.HASH_CODE));
+		assertEquals(4, statistics.getMaxVisited(Person.class, Operation.HASH_CODE));
+	}
+	
+	@Test
+	public void testHashesOfCircularReferencesComparedAreNotRecorded() throws Exception {
+		SelfReferencingExample instance1 = new SelfReferencingExample();
+		instance1.instance = instance1;
+		SelfReferencingExample instance2 = new SelfReferencingExample();
+		instance2.instance = instance2;
+		assertTrue(leh.getEquals(instance1).equals(instance2));
+		assertEquals(1, statistics.getCalls(SelfReferencingExample.class, Operation.EQUALS));
+		assertEquals(1, statistics.getCycles(SelfReferencingExample.class, Operation.EQUALS));
+		assertEquals(0, statistics.getCalls(SelfReferencingExample.class, Operation.HASH_CODE));
+		assertEquals(1, statistics.getCalls());
+	}
+	
+	@Test
+	public void testHashesOfCircularReferencesWrittenAreNotRecorded() throws Exception {
+		SelfReferencingExample instance = new SelfReferencingExample();
+		instance.instance = instance;
+		leh.getToString(instance).toString();
+		assertEquals(1, statistics.getCalls(SelfReferencingExample.class, Operation.TO_STRING));
+		assertEquals(0, statistics.getCalls(SelfReferencingExample.class, Operation.HASH_CODE));
+		assertEquals(1, statistics.getCalls());
+	}
+	
+	@Test
+	public void testRecordsPlanLookups() throws Exception {
+		leh.getHashCode(new Unread()).hashCode();
+		leh.getHashCode(new Unread()).hashCode();
+		assertEquals(1, statistics.getPlanMisses(Unread.class));
+		assertEquals(1, statistics.getPlanHits(Unread.class));
+		assertEquals(1, statistics.getPlanMisses());
+	}
+	
+	static class Unread implements LEHAware {
+		int value;
+	}
+	
+	@Test
+	public void testSummaryAndReset() throws Exception {
+		leh.getToString(createPerson()).toString();
+		String[] summary = statistics.getSummary();
+		assertEquals(1, summary.length);
+		assertTrue(summary[0], summary[0].startsWith("leh.example.person.Person TO_STRING calls=1 meanNanos="));
+		statistics.reset();
+		assertEquals(0, statistics.getSummary().length);
+		assertEquals(0, statistics.getCalls());
+	}
+	
+	@Test
+	public void testRegisteredAsMBean() throws Exception {
+		ObjectName name = statistics.register("test");
+		try {
+			leh.getHashCode(createPerson()).hashCode();
+			assertEquals(Long.valueOf(1), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Calls"));
+		} finally {
+			statistics.unregister("test");
+		}
+	}
+	
+	private Person createPerson() {
+		Food food = new Food();
+		food.setType(FoodType.PIZZA);
+		Person person = new Person();
+		person.setFirstName("Brian");
+		person.setFavoriteFoods(Arrays.asList(food));
+		return person;
+	}
+	
+}
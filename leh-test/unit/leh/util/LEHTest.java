@@ -1,12 +1,40 @@
 package leh.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import leh.annotations.Immutable;
+import leh.example.Money;
+import leh.example.Payload;
 import leh.example.SelfReferencingExample;
+import leh.example.Shipment;
+import leh.example.StoreInventory;
 import leh.example.food.Food;
 import leh.example.food.Food.FoodType;
 import leh.example.food.FoodInventory;
@@ -151,6 +179,240 @@ public class LEHTest {
 		LEHAssertions.verify(person1, person2, false);
 	}
 	
+	@Test
+	public void testNotEqualWithListElementsInDifferentOrder() throws Exception {
+		Person person1 = new Person();
+		Person person2 = new Person();
+		Food food1 = new Food();
+		Food food2 = new Food();
+		food1.setType(FoodType.PIZZA);
+		food2.setType(FoodType.TACO);
+		person1.setFavoriteFoods(Arrays.asList(food1, food2));
+		person2.setFavoriteFoods(Arrays.asList(food2, food1));
+		assertFalse(LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(true)).getEquals(person1).equals(person2));
+		LEHDelegate unordered = LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(false));
+		assertTrue(unordered.getEquals(person1).equals(person2));
+		assertEquals(unordered.getHashCode(person1).hashCode(), unordered.getHashCode(person2).hashCode());
+	}
+	
+	@Test
+	public void testIterablesAreComparedAsBagsByDefault() throws Exception {
+		assertFalse(LEHConfiguration.DEFAULT.isOrderedIterables());
+		List<String> list = Arrays.asList("b", "a");
+		Set<String> hashSet = new HashSet<String>(Arrays.asList("a", "b"));
+		Set<String> linkedHashSet = new LinkedHashSet<String>(Arrays.asList("a", "b"));
+		LEHDelegate leh = LEH.getInstance();
+		assertTrue(leh.getEquals(list).equals(hashSet));
+		assertTrue(leh.getEquals(hashSet).equals(linkedHashSet));
+		assertTrue(leh.getEquals(list).equals(linkedHashSet));
+		assertTrue(leh.getEquals(list).equals(Arrays.asList("a", "b")));
+		// in order, a List and a LinkedHashSet both equal to a HashSet differ
+		LEHDelegate ordered = LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(true));
+		assertTrue(ordered.getEquals(list).equals(hashSet));
+		assertTrue(ordered.getEquals(hashSet).equals(linkedHashSet));
+		assertFalse(ordered.getEquals(list).equals(linkedHashSet));
+	}
+	
+	@Test
+	public void testUnorderedDuplicatesMustOccurEquallyOften() throws Exception {
+		LEHDelegate unordered = LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(false));
+		assertFalse(unordered.getEquals(Arrays.asList("a", "a", "b")).equals(Arrays.asList("a", "b", "b")));
+		assertTrue(unordered.getEquals(Arrays.asList("a", "a", "b")).equals(Arrays.asList("b", "a", "a")));
+	}
+	
+	@Test
+	public void testNotEqualIterablesOfDifferentLength() throws Exception {
+		Iterable<String> iterable1 = iterable("a", "b");
+		Iterable<String> iterable2 = iterable("a", "b", "a");
+		assertFalse(LEH.getInstance().getEquals(iterable1).equals(iterable2));
+		assertFalse(LEH.getInstance().getEquals(iterable2).equals(iterable1));
+		assertTrue(LEH.getInstance().getEquals(iterable("b", "a")).equals(iterable1));
+	}
+	
+	private Iterable<String> iterable(final String... values) {
+		return new Iterable<String>() {
+			public Iterator<String> iterator() {
+				return Arrays.asList(values).iterator();
+			}
+		};
+	}
+	
+	@Test
+	public void testLargeSets() throws Exception {
+		Set<Food> foods1 = new HashSet<Food>();
+		Set<Food> foods2 = new HashSet<Food>();
+		for(int i = 0; i < 20000; i++){
+			foods1.add(createFood(i));
+			foods2.add(createFood(i));
+		}
+		assertTrue(LEH.getInstance().getEquals(foods1).equals(foods2));
+		foods2.iterator().next().setSodium(-1);
+		assertFalse(LEH.getInstance().getEquals(foods1).equals(foods2));
+	}
+	
+	private Food createFood(int calories) {
+		Food food = new Food();
+		food.setCalories(calories);
+		food.setType(FoodType.TACO);
+		return food;
+	}
+	
+	@Test
+	public void testKnownHashesRejectUnequalElementsWithoutComparingFields() throws Exception {
+		LEHStatistics statistics = new LEHStatistics();
+		LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withMetrics(statistics).withOrderedIterables(false));
+		List<Object> money1 = new ArrayList<Object>();
+		List<Object> money2 = new ArrayList<Object>();
+		List<Object> snapshots1 = new ArrayList<Object>();
+		List<Object> snapshots2 = new ArrayList<Object>();
+		for(int i = 0; i < 100; i++){
+			money1.add(new Money(i, "USD"));
+			money2.add(new Money(i + 100, "USD"));
+			snapshots1.add(LEH.getSnapshot(createFood(i)));
+			snapshots2.add(LEH.getSnapshot(createFood(i + 100)));
+		}
+		for(Object money : money1){
+			leh.getHashCode(money).hashCode();
+		}
+		for(Object money : money2){
+			leh.getHashCode(money).hashCode();
+		}
+		statistics.reset();
+		assertFalse(leh.getEquals(money1).equals(money2));
+		assertFalse(leh.getEquals(snapshots1).equals(snapshots2));
+		assertEquals(0, statistics.getFieldsRead(ArrayList.class, LEHMetrics.Operation.EQUALS));
+		assertEquals(0, statistics.getMaxVisited(ArrayList.class, LEHMetrics.Operation.EQUALS));
+		List<Object> reversed = new ArrayList<Object>(money1);
+		Collections.reverse(reversed);
+		assertTrue(leh.getEquals(money1).equals(reversed));
+		assertTrue(leh.getEquals(new Money(0, "USD")).equals(money1.get(0)));
+	}
+	
+	@Test
+	public void testArrayFields() throws Exception {
+		Payload payload1 = createPayload();
+		Payload payload2 = createPayload();
+		assertTrue(LEH.getInstance().getEquals(payload1).equals(payload2));
+		assertEquals(LEH.getInstance().getHashCode(payload1).hashCode(), LEH.getInstance().getHashCode(payload2).hashCode());
+		assertEquals("Payload=[data=[1, 2, 3], samples=[0.5, NaN], foods=[Food=[ids={type=TACO}, calories=1, sodium=0]]]", 
+				LEH.getInstance().getToString(payload1).toString());
+		payload2.getData()[2] = 4;
+		assertFalse(LEH.getInstance().getEquals(payload1).equals(payload2));
+		payload2.getData()[2] = 3;
+		payload2.getFoods()[0].setCalories(2);
+		assertFalse(LEH.getInstance().getEquals(payload1).equals(payload2));
+		payload2.setFoods(new Food[]{createFood(1)});
+		payload2.setSamples(new double[]{0.5, Double.NaN, 0});
+		assertFalse(LEH.getInstance().getEquals(payload1).equals(payload2));
+	}
+	
+	@Test
+	public void testArrays() throws Exception {
+		assertTrue(LEH.getInstance().getEquals(new int[]{1, 2}).equals(new int[]{1, 2}));
+		assertFalse(LEH.getInstance().getEquals(new int[]{1, 2}).equals(new long[]{1, 2}));
+		assertTrue(LEH.getInstance().getEquals(new Object[]{createFood(1)}).equals(new Food[]{createFood(1)}));
+		assertEquals(LEH.getInstance().getHashCode(new byte[]{1, 2}).hashCode(), LEH.getInstance().getHashCode(new byte[]{1, 2}).hashCode());
+		assertEquals("[a, b]", LEH.getInstance().getToString(new String[]{"a", "b"}).toString());
+		Object[] circular = new Object[1];
+		circular[0] = new SelfReferencingExample();
+		((SelfReferencingExample)circular[0]).instance = circular;
+		LEH.getInstance().getHashCode(circular).hashCode();
+		LEH.getInstance().getToString(circular).toString();
+	}
+	
+	@Test
+	public void testSnapshotCopiesArrays() throws Exception {
+		Payload payload = createPayload();
+		Object snapshot = LEH.getSnapshot(payload);
+		payload.getData()[0] = 9;
+		assertFalse(snapshot.equals(payload));
+		assertEquals(snapshot, createPayload());
+		byte[] data = new byte[]{1};
+		Object arraySnapshot = LEH.getSnapshot(data);
+		data[0] = 2;
+		assertEquals(arraySnapshot, LEH.getSnapshot(new byte[]{1}));
+		assertFalse(arraySnapshot.equals(data));
+	}
+	
+	private Payload createPayload() {
+		Payload payload = new Payload();
+		payload.setData(new byte[]{1, 2, 3});
+		payload.setSamples(new double[]{0.5, Double.NaN});
+		payload.setFoods(new Food[]{createFood(1)});
+		return payload;
+	}
+	
+	@Test
+	public void testDiff() throws Exception {
+		LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(true));
+		Person person1 = createMarriedPerson();
+		Person person2 = createMarriedPerson();
+		assertFalse(leh.getDiff(person1, person2).iterator().hasNext());
+		person2.getSpouse().getFavoriteFoods().get(2).setType(FoodType.PIZZA);
+		assertEquals(Arrays.asList("spouse.favoriteFoods[2].type"), toList(leh.getDiff(person1, person2)));
+		// Lists compared as unordered bags cannot pair their elements
+		assertEquals(Arrays.asList("spouse.favoriteFoods"), toList(LEH.getInstance().getDiff(person1, person2)));
+		person2.setFirstName("other");
+		person2.setNetWorth(1);
+		person2.getSpouse().getFavoriteFoods().add(createFood(4));
+		assertEquals(Arrays.asList("firstName", "netWorth", "spouse.favoriteFoods[2].type", "spouse.favoriteFoods[3]"), 
+				toList(leh.getDiff(person1, person2)));
+		assertEquals(Arrays.asList("firstName", "netWorth"), toList(leh.getDiff(person1, person2, 2, Integer.MAX_VALUE)));
+		assertEquals(Arrays.asList("firstName", "netWorth", "spouse"), toList(leh.getDiff(person1, person2, 10, 1)));
+		assertEquals(Arrays.asList(""), toList(leh.getDiff(person1, person2, 10, 0)));
+		assertEquals(Arrays.asList(""), toList(leh.getDiff(person1, new Employee())));
+		assertEquals(Arrays.asList("[1]"), toList(leh.getDiff(new int[]{1, 2}, new int[]{1, 3})));
+	}
+	
+	@Test
+	public void testDiffMaps() throws Exception {
+		Map<String, Food> foods1 = new LinkedHashMap<String, Food>();
+		Map<String, Food> foods2 = new LinkedHashMap<String, Food>();
+		foods1.put("a", createFood(1));
+		foods1.put("b", createFood(2));
+		foods2.put("a", createFood(3));
+		foods2.put("c", createFood(2));
+		assertEquals(Arrays.asList("[a].calories", "[b]", "[c]"), toList(LEH.getInstance().getDiff(foods1, foods2)));
+	}
+	
+	@Test
+	public void testDiffCircularReferences() throws Exception {
+		Person person1 = createMarriedPerson();
+		Person person2 = createMarriedPerson();
+		person1.getSpouse().setSpouse(person1);
+		person2.getSpouse().setSpouse(person2);
+		person2.setFirstName("other");
+		assertEquals(Arrays.asList("firstName"), toList(LEH.getInstance().getDiff(person1, person2)));
+		assertEquals(Arrays.asList("firstName"), toList(LEH.getInstance().getDiff(LEH.getSnapshot(person1), person2)));
+	}
+	
+	private Person createMarriedPerson() {
+		Person spouse = new Person();
+		spouse.setFirstName("spouse");
+		spouse.setFavoriteFoods(new ArrayList<Food>(Arrays.asList(createFood(1), createFood(2), createFood(3))));
+		Person person = new Person();
+		person.setFirstName("person");
+		person.setSpouse(spouse);
+		return person;
+	}
+	
+	private List<String> toList(Iterable<String> paths) {
+		List<String> list = new ArrayList<String>();
+		for(String path : paths){
+			list.add(path);
+		}
+		return list;
+	}
+	
+	@Test
+	public void testNotEqualListsDifferingNearFront() throws Exception {
+		List<String> list1 = new ArrayList<String>(Arrays.asList("a", "b", "c"));
+		List<String> list2 = new ArrayList<String>(Arrays.asList("a", "x", "c"));
+		assertFalse(LEH.getInstance().getEquals(list1).equals(list2));
+		list2.set(1, "b");
+		assertTrue(LEH.getInstance().getEquals(list1).equals(list2));
+	}
+	
 	@Test
 	public void testNotEqualWithReferenceUnequalEntity() throws Exception {
 		Person person1 = new Person();
@@ -185,6 +447,269 @@ public class LEHTest {
 					LEH.getInstance().getToString(person).toString());
 	}
 	
+	@Test
+	public void testAppendToStringWritesToString() throws Exception {
+		Employee person = new Employee();
+		person.setSsn("123456789");
+		person.setSpouse(createPersonWithFavoriteFood(FoodType.PIZZA));
+		StringBuilder builder = new StringBuilder("employee: ");
+		assertSame(builder, LEH.getInstance().appendToString(person, builder));
+		assertEquals("employee: " + LEH.getInstance().getToString(person), builder.toString());
+	}
+	
+	@Test
+	public void testLargeCollectionToString() throws Exception {
+		Person person = new Person();
+		List<Food> foods = new ArrayList<Food>();
+		for(int i = 0; i < 10000; i++){
+			foods.add(createFood(i));
+		}
+		person.setFavoriteFoods(foods);
+		String toString = LEH.getInstance().getToString(person).toString();
+		assertTrue(toString.startsWith("Person=[favoriteFoods=[Food=[ids={type=TACO}, calories=0, sodium=0], "));
+		assertTrue(toString.endsWith("Food=[ids={type=TACO}, calories=9999, sodium=0]], gender=UNKNOWN, netWorth=0]"));
+	}
+	
+	@Test
+	public void testToStringMaxDepth() throws Exception {
+		Person person = createPersonWithFavoriteFood(FoodType.PIZZA);
+		person.setFirstName("Brian");
+		LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withMaxToStringDepth(1));
+		assertEquals("Person=[firstName=Brian, favoriteFoods=[Food=[...]], gender=UNKNOWN, netWorth=0]", 
+				leh.getToString(person).toString());
+	}
+	
+	@Test
+	public void testToStringMaxElements() throws Exception {
+		Person person = new Person();
+		person.setFavoriteFoods(Arrays.asList(createFood(1), createFood(2), createFood(3)));
+		LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withMaxToStringElements(1));
+		assertEquals("Person=[favoriteFoods=[Food=[ids={type=TACO}, calories=1, sodium=0], ...], gender=UNKNOWN, netWorth=0]", 
+				leh.getToString(person).toString());
+		assertEquals("Person=[favoriteFoods=[Food=[ids={type=TACO}, calories=1, sodium=0], Food=[ids={type=TACO}, calories=2, sodium=0], " +
+				"Food=[ids={type=TACO}, calories=3, sodium=0]], gender=UNKNOWN, netWorth=0]", 
+				LEH.getInstance(LEHConfiguration.DEFAULT.withMaxToStringElements(3)).getToString(person).toString());
+	}
+	
+	@Test
+	public void testToStringMaxLength() throws Exception {
+		Person person = createPersonWithFavoriteFood(FoodType.PIZZA);
+		person.setFirstName("Brian");
+		LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withMaxToStringLength(10));
+		assertEquals("Person=[fi...", leh.getToString(person).toString());
+		StringBuilder builder = new StringBuilder("person: ");
+		leh.appendToString(person, builder);
+		assertEquals("person: Person=[fi...", builder.toString());
+		String toString = LEH.getInstance().getToString(person).toString();
+		assertEquals(toString, LEH.getInstance(LEHConfiguration.DEFAULT.withMaxToStringLength(toString.length())).getToString(person).toString());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testToStringLimitsMustBePositive() throws Exception {
+		LEHConfiguration.DEFAULT.withMaxToStringLength(0);
+	}
+	
+	@Test
+	public void testUnpairedElementsWithReliableHashesAreNotComparedToEveryElement() throws Exception {
+		LEHStatistics statistics = new LEHStatistics();
+		LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withMetrics(statistics).withOrderedIterables(false));
+		List<Person> people1 = new ArrayList<Person>();
+		List<Person> people2 = new ArrayList<Person>();
+		Map<Person, String> map1 = new LinkedHashMap<Person, String>();
+		Map<Person, String> map2 = new LinkedHashMap<Person, String>();
+		for(int i = 0; i < 1000; i++){
+			people1.add(createPerson(String.valueOf(i)));
+			people2.add(createPerson(i == 0 ? "none" : String.valueOf(i)));
+			map1.put(people1.get(i), "value");
+			map2.put(people2.get(i), "value");
+		}
+		assertFalse(leh.getEquals(people1).equals(people2));
+		assertFalse(leh.getEquals(map1).equals(map2));
+		assertEquals(0, statistics.getFieldsRead(ArrayList.class, LEHMetrics.Operation.EQUALS));
+		assertEquals(0, statistics.getFieldsRead(LinkedHashMap.class, LEHMetrics.Operation.EQUALS));
+		people2.set(0, createPerson("0"));
+		assertTrue(leh.getEquals(people1).equals(people2));
+	}
+	
+	@Test
+	public void testWrappersOfInstancesNotLEHAwarePairWithUnwrappedInstances() throws Exception {
+		LEHDelegate unordered = LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(false));
+		List<Object> wrapped = new ArrayList<Object>();
+		List<Object> unwrapped = new ArrayList<Object>();
+		Map<Object, String> wrappedKeys = new HashMap<Object, String>();
+		Map<Object, String> unwrappedKeys = new HashMap<Object, String>();
+		Plain first = new Plain(0);
+		for(int i = 0; i < 10; i++){
+			wrapped.add(LEH.getInstance(new Plain(i)));
+			unwrapped.add(new Plain(9 - i));
+			wrappedKeys.put(LEH.getSnapshot(new Plain(i)), "value" + i);
+			unwrappedKeys.put(i == 0 ? first : new Plain(i), "value" + i);
+		}
+		// the unwrapped instances hash by identity, so pair only by comparing every element
+		assertTrue(unordered.getEquals(wrapped).equals(unwrapped));
+		assertTrue(unordered.getEquals(wrappedKeys).equals(unwrappedKeys));
+		unwrapped.set(0, new Plain(10));
+		unwrappedKeys.remove(first);
+		unwrappedKeys.put(new Plain(10), "value0");
+		assertFalse(unordered.getEquals(wrapped).equals(unwrapped));
+		assertFalse(unordered.getEquals(wrappedKeys).equals(unwrappedKeys));
+	}
+	
+	static class Plain {
+		final int value;
+		Plain(int value) {
+			this.value = value;
+		}
+	}
+	
+	private Person createPerson(String firstName) {
+		Person person = new Person();
+		person.setFirstName(firstName);
+		return person;
+	}
+	
+	@Test
+	public void testParallelEquals() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withParallelExecutor(executor).withParallelThreshold(100)
+					.withOrderedIterables(true));
+			List<Food> list1 = new ArrayList<Food>();
+			List<Food> list2 = new ArrayList<Food>();
+			Map<Food, Food> map1 = new HashMap<Food, Food>();
+			Map<Food, Food> map2 = new HashMap<Food, Food>();
+			for(int i = 0; i < 5000; i++){
+				list1.add(createFood(i));
+				list2.add(createFood(i));
+				map1.put(createFood(i), createFood(-i));
+				map2.put(createFood(i), createFood(-i));
+			}
+			Set<Food> set1 = new HashSet<Food>(list1);
+			Set<Food> set2 = new HashSet<Food>(list2);
+			assertTrue(leh.getEquals(list1).equals(list2));
+			assertTrue(leh.getEquals(set1).equals(set2));
+			assertTrue(leh.getEquals(map1).equals(map2));
+			Collections.reverse(list2);
+			assertFalse(leh.getEquals(list1).equals(list2));
+			assertTrue(LEH.getInstance(LEHConfiguration.DEFAULT.withParallelExecutor(executor).withParallelThreshold(100)
+					.withOrderedIterables(false)).getEquals(list1).equals(list2));
+			list1.get(4000).setSodium(-1);
+			set1.iterator().next().setSodium(-1);
+			map2.values().iterator().next().setSodium(-1);
+			assertFalse(leh.getEquals(list1).equals(list2));
+			assertFalse(leh.getEquals(set1).equals(set2));
+			assertFalse(leh.getEquals(map1).equals(map2));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testParallelEqualsWithDuplicatesAndCollisions() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withParallelExecutor(executor)
+					.withParallelThreshold(100).withOrderedIterables(false));
+			List<String> list1 = new ArrayList<String>();
+			List<String> list2 = new ArrayList<String>();
+			for(int i = 0; i < 2000; i++){
+				// "Aa" and "BB" share a hashCode
+				list1.add(i % 2 == 0 ? "Aa" : "BB");
+				list2.add(i < 1000 ? "BB" : "Aa");
+			}
+			assertTrue(leh.getEquals(list1).equals(list2));
+			list2.set(0, "Aa");
+			assertFalse(leh.getEquals(list1).equals(list2));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testParallelEqualsWithCircularReferences() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withParallelExecutor(executor).withParallelThreshold(100));
+			Employee manager1 = createManagerOfManyReportees();
+			Employee manager2 = createManagerOfManyReportees();
+			assertTrue(leh.getEquals(manager1).equals(manager2));
+			assertEquals(LEH.getInstance().getEquals(manager1).equals(manager2), leh.getEquals(manager1).equals(manager2));
+			manager2.getReportees().get(manager2).get(500).setFirstName("other");
+			assertFalse(leh.getEquals(manager1).equals(manager2));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private Employee createManagerOfManyReportees() {
+		Employee manager = new Employee();
+		manager.setFirstName("manager");
+		for(int i = 0; i < 600; i++){
+			Employee employee = new Employee();
+			employee.setFirstName("employee" + i);
+			manager.addReportee(manager, employee);
+		}
+		return manager;
+	}
+	
+	@Test
+	public void testParallelHashCode() throws Exception {
+		ThreadPoolExecutor executor = (ThreadPoolExecutor)Executors.newFixedThreadPool(4);
+		try {
+			LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withParallelExecutor(executor).withParallelThreshold(100));
+			Employee owner = new Employee();
+			owner.setFirstName("owner");
+			List<Food> foods = new ArrayList<Food>();
+			Map<Food, Food> pairings = new HashMap<Food, Food>();
+			for(int i = 0; i < 2000; i++){
+				foods.add(createFood(i));
+				pairings.put(createFood(i), createFood(-i));
+				Employee manager = new Employee();
+				manager.setFirstName("manager" + i);
+				Employee employee = new Employee();
+				employee.setFirstName("employee" + i);
+				owner.addReportee(manager, employee);
+			}
+			owner.addReportee(owner, new Employee());
+			owner.setFavoriteFoods(foods);
+			assertEquals(LEH.getInstance().getHashCode(owner).hashCode(), leh.getHashCode(owner).hashCode());
+			assertTrue(executor.getTaskCount() > 0);
+			for(Object instance : Arrays.asList(owner, foods, new HashSet<Food>(foods), pairings)){
+				assertEquals(LEH.getSnapshot(instance).hashCode(), leh.getSnapshot(instance).hashCode());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void testParallelCallsFromTheExecutorsOwnThreads() throws Exception {
+		// the only thread is busy calling back into LEH: queued tasks would never start, rejected ones never run
+		ExecutorService queueing = Executors.newSingleThreadExecutor();
+		ExecutorService rejecting = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+		try {
+			for(ExecutorService executor : Arrays.asList(queueing, rejecting)){
+				final LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withParallelExecutor(executor).withParallelThreshold(100));
+				final List<Food> foods1 = new ArrayList<Food>();
+				final List<Food> foods2 = new ArrayList<Food>();
+				for(int i = 0; i < 2000; i++){
+					foods1.add(createFood(i));
+					foods2.add(createFood(i));
+				}
+				Future<Boolean> equal = executor.submit(new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						return leh.getEquals(foods1).equals(foods2) && 
+								leh.getSnapshot(foods1).hashCode() == LEH.getSnapshot(foods2).hashCode();
+					}
+				});
+				assertTrue(equal.get());
+			}
+		} finally {
+			queueing.shutdown();
+			rejecting.shutdown();
+		}
+	}
+	
 	@Test 
 	public void testCircularReferenceToString() throws Exception {
 		Employee employee = new Employee();
@@ -314,6 +839,301 @@ public class LEHTest {
 		LEHAssertions.verify(sre1, sre2, true);
 	}
 	
+	@Test
+	public void testLargeCircularReference() throws Exception {
+		LEHAssertions.verify(createRing(100), createRing(100), true);
+	}
+	
+	private SelfReferencingExample createRing(int size) {
+		SelfReferencingExample first = new SelfReferencingExample();
+		SelfReferencingExample last = first;
+		for(int i = 1; i < size; i++){
+			SelfReferencingExample next = new SelfReferencingExample();
+			last.instance = next;
+			last = next;
+		}
+		last.instance = first;
+		return first;
+	}
+	
+	@Test
+	public void testSharedReferenceHashesAsEqualDistinctReferences() throws Exception {
+		Food food = new Food();
+		food.setType(FoodType.PIZZA);
+		Food food1 = new Food();
+		food1.setType(FoodType.PIZZA);
+		Food food2 = new Food();
+		food2.setType(FoodType.PIZZA);
+		Person person1 = new Person();
+		person1.setFavoriteFoods(Arrays.asList(food, food));
+		Person person2 = new Person();
+		person2.setFavoriteFoods(Arrays.asList(food1, food2));
+		assertTrue(LEH.getInstance(person1).equals(person2));
+		assertEquals(LEH.getInstance(person1).hashCode(), LEH.getInstance(person2).hashCode());
+	}
+	
+	@Test(timeout = 10000)
+	public void testSharedSubgraphsAreComparedOnce() throws Exception {
+		// each level references the level below twice, so 2^40 paths reach the bottom
+		assertTrue(LEH.getInstance().getEquals(createDiamonds(40, 1)).equals(createDiamonds(40, 1)));
+		assertFalse(LEH.getInstance().getEquals(createDiamonds(40, 1)).equals(createDiamonds(40, 2)));
+	}
+	
+	@Test(timeout = 10000)
+	public void testSharedSubgraphsAreHashedOnce() throws Exception {
+		int hashCode = LEH.getInstance().getHashCode(createDiamonds(40, 1)).hashCode();
+		assertEquals(hashCode, LEH.getInstance().getHashCode(createDiamonds(40, 1)).hashCode());
+		assertEquals(hashCode, LEH.getSnapshot(createDiamonds(40, 1)).hashCode());
+		// circular references are still hashed, and compared, by the same rule
+		Diamond cyclic1 = createDiamonds(40, 1);
+		Diamond cyclic2 = createDiamonds(40, 1);
+		cyclic1.left.left.right = cyclic1;
+		cyclic2.left.left.right = cyclic2;
+		assertEquals(LEH.getInstance(cyclic1).hashCode(), LEH.getInstance(cyclic2).hashCode());
+		assertTrue(LEH.getInstance(cyclic1).equals(cyclic2));
+		assertTrue(LEH.getSnapshot(cyclic1).equals(cyclic2));
+	}
+	
+	private Diamond createDiamonds(int depth, int value) {
+		Diamond diamond = new Diamond();
+		diamond.value = value;
+		for(int i = 0; i < depth; i++){
+			Diamond parent = new Diamond();
+			parent.left = diamond;
+			parent.right = diamond;
+			diamond = parent;
+		}
+		return diamond;
+	}
+	
+	static class Diamond implements LEHAware {
+		Diamond left;
+		Diamond right;
+		int value;
+	}
+	
+	@Test
+	public void testImmutableHashCodeAndToStringAreMemoized() throws Exception {
+		Money money = new Money(1, "USD");
+		int hashCode = LEH.getInstance(money).hashCode();
+		String toString = LEH.getInstance(money).toString();
+		assertEquals("Money=[amount=1, currency=USD]", toString);
+		setAmount(money, 2);
+		assertEquals(hashCode, LEH.getInstance(money).hashCode());
+		assertEquals(toString, LEH.getInstance(money).toString());
+	}
+	
+	@Test
+	public void testImmutableWithMemoizedHashCodesDifferingAreNotEqual() throws Exception {
+		Money money1 = new Money(1, "USD");
+		Money money2 = new Money(2, "USD");
+		LEH.getInstance(money1).hashCode();
+		LEH.getInstance(money2).hashCode();
+		setAmount(money2, 1);
+		assertFalse(LEH.getInstance(money1).equals(money2));
+		assertTrue(LEH.getInstance(money1).equals(new Money(1, "USD")));
+	}
+	
+	@Test
+	public void testImmutableHashCodesThroughCircularReferencesAreNotMemoized() throws Exception {
+		ImmutableLink link = new ImmutableLink();
+		link.next = new ImmutableLink();
+		link.next.next = link;
+		int hashCode = LEH.getInstance(link).hashCode();
+		link.next.value = 1;
+		assertNotEquals(hashCode, LEH.getInstance(link).hashCode());
+	}
+	
+	@Immutable
+	static class ImmutableLink implements LEHAware {
+		ImmutableLink next;
+		int value;
+	}
+	
+	private void setAmount(Money money, long amount) throws Exception {
+		Field field = Money.class.getDeclaredField("amount");
+		field.setAccessible(true);
+		field.setLong(money, amount);
+	}
+	
+	@Test
+	public void testSnapshotDoesNotObserveLaterMutation() throws Exception {
+		Person person = createPersonWithFavoriteFood(FoodType.PIZZA);
+		Wrapper snapshot = LEH.getSnapshot(person);
+		int hashCode = LEH.getInstance(person).hashCode();
+		String toString = LEH.getInstance(person).toString();
+		assertEquals(hashCode, snapshot.hashCode());
+		assertEquals(toString, snapshot.toString());
+		person.setFirstName("Brian");
+		person.setSsn("123456789");
+		person.getFavoriteFoods().add(new Food());
+		assertEquals(hashCode, snapshot.hashCode());
+		assertEquals(toString, snapshot.toString());
+		assertFalse(snapshot.equals(person));
+		assertTrue(snapshot.equals(createPersonWithFavoriteFood(FoodType.PIZZA)));
+		assertSame(person, snapshot.getWrappedInstance());
+	}
+	
+	@Test
+	public void testSnapshotsOfEqualCircularGraphsWithDifferentHashCodes() throws Exception {
+		// a two instance cycle, and the same cycle unrolled once before closing
+		Diamond cycle = createCycle();
+		Diamond unrolled = new Diamond();
+		unrolled.left = new Diamond();
+		unrolled.left.left = createCycle();
+		assertTrue(LEH.getInstance(cycle).equals(unrolled));
+		assertNotEquals(LEH.getSnapshot(cycle).hashCode(), LEH.getSnapshot(unrolled).hashCode());
+		assertTrue(LEH.getSnapshot(cycle).equals(LEH.getSnapshot(unrolled)));
+		assertTrue(LEH.getSnapshot(unrolled).equals(LEH.getSnapshot(cycle)));
+	}
+	
+	@Test
+	public void testUnreliableSnapshotHashCodesDoNotProveElementsUnequal() throws Exception {
+		Diamond unrolled = new Diamond();
+		unrolled.left = new Diamond();
+		unrolled.left.left = createCycle();
+		Wrapper snapshot1 = LEH.getSnapshot(createCycle());
+		Wrapper snapshot2 = LEH.getSnapshot(unrolled);
+		LEHDelegate leh = LEH.getInstance();
+		assertTrue(leh.getEquals(Arrays.asList(snapshot1)).equals(Arrays.asList(snapshot2)));
+		assertTrue(leh.getEquals(Arrays.asList(createCycle())).equals(Arrays.asList(snapshot2)));
+	}
+	
+	private Diamond createCycle() {
+		Diamond diamond = new Diamond();
+		diamond.left = new Diamond();
+		diamond.left.left = diamond;
+		return diamond;
+	}
+	
+	@Test
+	public void testSnapshotsAsMapKeys() throws Exception {
+		Map<Wrapper, String> map = new HashMap<Wrapper, String>();
+		map.put(LEH.getSnapshot(createPersonWithFavoriteFood(FoodType.PIZZA)), "pizza");
+		map.put(LEH.getSnapshot(createPersonWithFavoriteFood(FoodType.TACO)), "taco");
+		assertEquals("pizza", map.get(LEH.getSnapshot(createPersonWithFavoriteFood(FoodType.PIZZA))));
+		assertEquals("taco", map.get(LEH.getInstance(createPersonWithFavoriteFood(FoodType.TACO))));
+		assertTrue(LEH.getInstance(createPersonWithFavoriteFood(FoodType.TACO)).equals(
+				LEH.getSnapshot(createPersonWithFavoriteFood(FoodType.TACO))));
+		assertFalse(LEH.getSnapshot(createPersonWithFavoriteFood(FoodType.TACO)).equals(
+				LEH.getSnapshot(createPersonWithFavoriteFood(FoodType.PIZZA))));
+	}
+	
+	@Test
+	public void testSnapshotOfCollection() throws Exception {
+		Set<String> set = new HashSet<String>(Arrays.asList("a", "b"));
+		Wrapper snapshot = LEH.getSnapshot(set);
+		set.add("c");
+		assertTrue(snapshot.equals(new HashSet<String>(Arrays.asList("b", "a"))));
+		assertEquals(LEH.getSnapshot(Arrays.asList("b", "a")).hashCode(), snapshot.hashCode());
+		assertTrue(snapshot.equals(LEH.getSnapshot(Arrays.asList("b", "a"))));
+	}
+	
+	private Person createPersonWithFavoriteFood(FoodType type) {
+		Food food = new Food();
+		food.setType(type);
+		Person person = new Person();
+		person.setFavoriteFoods(new ArrayList<Food>(Arrays.asList(food)));
+		return person;
+	}
+	
+	@Test
+	public void testIterableHashCodeIsTheSumOfItsElementHashCodes() throws Exception {
+		LEHDelegate leh = LEH.getInstance();
+		int empty = leh.getHashCode(new Bag(new ArrayList<String>())).hashCode();
+		// an empty Iterable contributes its field name alone, a null one nothing
+		assertEquals(leh.getHashCode(new Bag(null)).hashCode() + "values".hashCode(), empty);
+		assertEquals(empty, leh.getHashCode(new Bag(new HashSet<String>())).hashCode());
+		assertEquals(empty, leh.getHashCode(new Bag(Collections.emptyList())).hashCode());
+		int ab = leh.getHashCode(new Bag(Arrays.asList("a", "b"))).hashCode();
+		assertEquals(empty + 31 * ("a".hashCode() + "b".hashCode()), ab);
+		// independent of order and of the kind of Iterable holding the elements
+		assertEquals(ab, leh.getHashCode(new Bag(Arrays.asList("b", "a"))).hashCode());
+		assertEquals(ab, leh.getHashCode(new Bag(new HashSet<String>(Arrays.asList("b", "a")))).hashCode());
+		assertEquals(ab, leh.getHashCode(new Bag(iterable("a", "b"))).hashCode());
+		// every element counts, not only the last
+		assertNotEquals(ab, leh.getHashCode(new Bag(Arrays.asList("c", "b"))).hashCode());
+		assertNotEquals(ab, leh.getHashCode(new Bag(Arrays.asList("a", "b", "b"))).hashCode());
+		assertEquals(ab, LEH.getSnapshot(new Bag(new HashSet<String>(Arrays.asList("a", "b")))).hashCode());
+	}
+	
+	@Test
+	public void testEqualInstancesHashAlikeThroughTheirPlans() throws Exception {
+		LEHDelegate unordered = LEH.getInstance(LEHConfiguration.DEFAULT.withOrderedIterables(false));
+		Food pizza = new Food();
+		pizza.setType(FoodType.PIZZA);
+		Food taco = new Food();
+		taco.setType(FoodType.TACO);
+		taco.setCalories(300);
+		Person person1 = new Person();
+		person1.setFirstName("first");
+		person1.setNetWorth(10);
+		person1.setFavoriteFoods(new ArrayList<Food>(Arrays.asList(pizza, taco)));
+		Person person2 = new Person();
+		person2.setFirstName("first");
+		person2.setNetWorth(10);
+		person2.setFavoriteFoods(new ArrayList<Food>(Arrays.asList(taco, pizza)));
+		assertTrue(unordered.getEquals(person1).equals(person2));
+		assertEquals(unordered.getHashCode(person1).hashCode(), unordered.getHashCode(person2).hashCode());
+		assertEquals(LEH.getSnapshot(person1).hashCode(), LEH.getInstance(person2).hashCode());
+		Bag list = new Bag(Arrays.asList(person1, person2));
+		Bag set = new Bag(new HashSet<Object>(Arrays.asList(LEH.getSnapshot(person2), person1)));
+		assertTrue(unordered.getEquals(list).equals(set));
+		assertEquals(unordered.getHashCode(list).hashCode(), unordered.getHashCode(set).hashCode());
+		person2.setNetWorth(11);
+		assertFalse(unordered.getEquals(person1).equals(person2));
+		assertNotEquals(unordered.getHashCode(person1).hashCode(), unordered.getHashCode(person2).hashCode());
+	}
+	
+	static class Bag implements LEHAware {
+		final Iterable<?> values;
+		Bag(Iterable<?> values) {
+			this.values = values;
+		}
+	}
+	
+	@Test
+	public void testLargeMaps() throws Exception {
+		Map<Shipment, Food> map1 = createShipments(20000, new HashMap<Shipment, Food>());
+		Map<Shipment, Food> map2 = createShipments(20000, new LinkedHashMap<Shipment, Food>());
+		assertTrue(LEH.getInstance().getEquals(map1).equals(map2));
+		map2.values().iterator().next().setCalories(1);
+		assertFalse(LEH.getInstance().getEquals(map1).equals(map2));
+	}
+	
+	@Test
+	public void testMapsWithWrappedKeys() throws Exception {
+		Map<Object, String> map1 = new HashMap<Object, String>();
+		Map<Object, String> map2 = new HashMap<Object, String>();
+		for(int i = 0; i < 10; i++){
+			map1.put(LEH.getInstance(createStoreInventory(i)), "value" + i);
+			map2.put(createStoreInventory(i), "value" + i);
+		}
+		assertTrue(LEH.getInstance().getEquals(map1).equals(map2));
+		map2.put(createStoreInventory(0), "value");
+		map2.remove(createStoreInventory(1));
+		assertFalse(LEH.getInstance().getEquals(map1).equals(map2));
+	}
+	
+	private StoreInventory createStoreInventory(int shipmentId) {
+		StoreInventory inventory = new StoreInventory();
+		Shipment shipment = new Shipment();
+		shipment.setId(String.valueOf(shipmentId));
+		inventory.setShipments(Collections.singletonMap(shipment, Collections.<FoodInventory>emptyList()));
+		return inventory;
+	}
+	
+	private Map<Shipment, Food> createShipments(int size, Map<Shipment, Food> shipments) {
+		for(int i = 0; i < size; i++){
+			Shipment shipment = new Shipment();
+			shipment.setId(String.valueOf(i));
+			Food food = new Food();
+			food.setType(i % 2 == 0 ? FoodType.PIZZA : FoodType.TACO);
+			shipments.put(shipment, food);
+		}
+		return shipments;
+	}
+	
 	@Test
 	public void testEqualsHashCodeAnonymousInnerClassWrapped() throws Exception {
 		Object meh = new Object(){
@@ -328,4 +1148,193 @@ public class LEHTest {
 		assertEquals(meh.hashCode(), meh2.hashCode());
 	}
 	
+	@Test
+	public void testFieldAccessorsReadPrivateInheritedAndPrimitiveFields() throws Exception {
+		Employee employee = new Employee();
+		employee.setFirstName("first");
+		employee.setSalary(10);
+		Field declared = Person.class.getDeclaredField("firstName");
+		FieldAccessor firstName = FieldAccessor.create(declared);
+		assertFalse(firstName instanceof PrimitiveFieldAccessor);
+		assertTrue(firstName.readable);
+		assertTrue(firstName.isValue);
+		// private field declared by the superclass, read from the subclass
+		assertEquals("first", firstName.get(employee));
+		assertNull(firstName.get(null));
+		// access checks are suppressed on the accessor's copy of the field only
+		assertTrue(declared.isAccessible());
+		assertFalse(Person.class.getDeclaredField("firstName").isAccessible());
+		FieldAccessor salary = FieldAccessor.create(Employee.class.getDeclaredField("salary"));
+		assertTrue(salary instanceof PrimitiveFieldAccessor);
+		assertTrue(salary.isValue);
+		assertEquals(Long.valueOf(10), salary.get(employee));
+		Employee other = new Employee();
+		other.setSalary(10);
+		assertTrue(((PrimitiveFieldAccessor)salary).isEqual(employee, other));
+		assertEquals(Long.valueOf(10).hashCode(), ((PrimitiveFieldAccessor)salary).getHashCode(employee));
+		FieldAccessor reportees = FieldAccessor.create(Employee.class.getDeclaredField("reportees"));
+		assertFalse(reportees.isValue);
+		assertSame(employee.getReportees(), reportees.get(employee));
+	}
+
+	@Test
+	public void testGeneratedPlansMatchReflectivePlans() throws Exception {
+		for(Class<?> type : new Class<?>[]{Person.class, Employee.class, Food.class, FoodInventory.class, SelfReferencingExample.class}){
+			assertNotNull("Expected a plan generated for " + type, ClassPlan.findGeneratedPlan(type));
+			ClassPlan generated = ClassPlan.read(type);
+			ClassPlan reflected = ClassPlan.readReflectively(type);
+			assertEquals(Arrays.toString(reflected.equalsFields), Arrays.toString(generated.equalsFields));
+			assertEquals(Arrays.toString(reflected.identityFields), Arrays.toString(generated.identityFields));
+			assertEquals(Arrays.toString(reflected.nonIdentityFields), Arrays.toString(generated.nonIdentityFields));
+		}
+	}
+	
+	@Test
+	public void testClassesWithoutGeneratedPlans() throws Exception {
+		assertNull(ClassPlan.findGeneratedPlan(String.class));
+		assertNull(ClassPlan.findGeneratedPlan(Plain.class));
+		assertEquals(Arrays.toString(ClassPlan.readReflectively(Plain.class).equalsFields), 
+				Arrays.toString(ClassPlan.read(Plain.class).equalsFields));
+	}
+	
+	@Test
+	public void testStaleGeneratedPlansAreNotRead() throws Exception {
+		LEHPlan generated = ClassPlan.findGeneratedPlan(Employee.class);
+		assertNotNull(ClassPlan.read(Employee.class, generated));
+		int fields = generated.getNames().length;
+		assertNotNull(ClassPlan.read(Employee.class, new StalePlan(generated, fields, generated.getFingerprint())));
+		// a field added, removed or renamed after the plan was generated
+		assertNull(ClassPlan.read(Employee.class, new StalePlan(generated, fields, generated.getFingerprint() + 1)));
+		// a described field the class no longer declares
+		assertNull(ClassPlan.getGeneratedFields(Person.class, generated));
+		assertEquals(Arrays.toString(ClassPlan.readReflectively(Employee.class).equalsFields), 
+				Arrays.toString(ClassPlan.read(Employee.class).equalsFields));
+	}
+	
+	/**
+	 * Describes the first fields of a generated plan, with the supplied
+	 * fingerprint.
+	 */
+	static class StalePlan implements LEHPlan {
+		final LEHPlan plan;
+		final int fields;
+		final int fingerprint;
+		StalePlan(LEHPlan plan, int fields, int fingerprint) {
+			this.plan = plan;
+			this.fields = fields;
+			this.fingerprint = fingerprint;
+		}
+		public Class<?>[] getDeclaringClasses() {
+			Class<?>[] declaringClasses = new Class<?>[fields];
+			System.arraycopy(plan.getDeclaringClasses(), 0, declaringClasses, 0, fields);
+			return declaringClasses;
+		}
+		public String[] getNames() {
+			String[] names = new String[fields];
+			System.arraycopy(plan.getNames(), 0, names, 0, fields);
+			return names;
+		}
+		public int[] getRoles() {
+			int[] roles = new int[fields];
+			System.arraycopy(plan.getRoles(), 0, roles, 0, fields);
+			return roles;
+		}
+		public int getFingerprint() {
+			return fingerprint;
+		}
+	}
+	
+	@Test
+	public void testPlansAreSharedAcrossThreads() throws Exception {
+		final ClassPlan[] otherThreadsPlan = new ClassPlan[1];
+		Thread thread = new Thread(){
+			@Override
+			public void run() {
+				LEH.getInstance().getHashCode(new Employee()).hashCode();
+				otherThreadsPlan[0] = ClassPlan.get(Employee.class);
+			}
+		};
+		thread.start();
+		thread.join();
+		LEH.getInstance().getHashCode(new Employee()).hashCode();
+		assertSame(otherThreadsPlan[0], ClassPlan.get(Employee.class));
+	}
+	
+	@Test
+	public void testFieldsComparedCheapestFirst() throws Exception {
+		ClassPlan plan = ClassPlan.readReflectively(Employee.class);
+		List<String> order = new ArrayList<String>();
+		int cost = 0;
+		for(int i : plan.comparisonOrder){
+			assertTrue(cost <= ClassPlan.getCost(plan.equalsFields[i]));
+			cost = ClassPlan.getCost(plan.equalsFields[i]);
+			order.add(plan.equalsFields[i].getName());
+		}
+		assertEquals(plan.equalsFields.length, order.size());
+		assertEquals("salary", order.get(0));
+		assertTrue(order.indexOf("manager") < order.indexOf("reportees"));
+		assertTrue(order.indexOf("netWorth") < order.indexOf("favoriteFoods"));
+	}
+	
+	@Test
+	public void testFieldsFoundUnequalOftenAreComparedFirst() throws Exception {
+		Scalars scalars1 = new Scalars();
+		Scalars scalars2 = new Scalars();
+		ClassPlan plan = ClassPlan.get(Scalars.class);
+		assertEquals("first", plan.equalsFields[plan.comparisonOrder[0]].getName());
+		for(int i = 0; i < ClassPlan.REORDER_INTERVAL; i++){
+			scalars2.third = i + 1;
+			assertFalse(LEH.getInstance().getEquals(scalars1).equals(scalars2));
+		}
+		assertEquals("third", plan.equalsFields[plan.comparisonOrder[0]].getName());
+		scalars2.third = 0;
+		assertTrue(LEH.getInstance().getEquals(scalars1).equals(scalars2));
+	}
+	
+	static class Scalars implements LEHAware {
+		int first;
+		int second;
+		int third;
+	}
+	
+	@Test
+	public void testPrimitiveFieldsCompareAndHashAsBoxedValues() throws Exception {
+		for(FieldAccessor field : ClassPlan.get(Primitives.class).equalsFields){
+			assertTrue(field.toString(), field instanceof PrimitiveFieldAccessor);
+		}
+		Primitives primitives1 = new Primitives();
+		Primitives primitives2 = new Primitives();
+		assertTrue(LEH.getInstance().getEquals(primitives1).equals(primitives2));
+		primitives1.d = Double.NaN;
+		primitives2.d = Double.NaN;
+		assertTrue(LEH.getInstance().getEquals(primitives1).equals(primitives2));
+		primitives1.f = 0.0f;
+		primitives2.f = -0.0f;
+		assertFalse(LEH.getInstance().getEquals(primitives1).equals(primitives2));
+		primitives2.f = 0.0f;
+		primitives2.c = 'x';
+		assertFalse(LEH.getInstance().getEquals(primitives1).equals(primitives2));
+		primitives1.z = true;
+		primitives1.b = -1;
+		primitives1.s = Short.MIN_VALUE;
+		primitives1.i = 42;
+		primitives1.j = Long.MAX_VALUE;
+		primitives1.c = 'x';
+		// snapshots capture and hash the boxed values
+		assertEquals(LEH.getSnapshot(primitives1).hashCode(), LEH.getInstance().getHashCode(primitives1).hashCode());
+		assertEquals(LEH.getSnapshot(primitives2).hashCode(), LEH.getInstance().getHashCode(primitives2).hashCode());
+		assertEquals(LEH.getSnapshot(primitives1), primitives1);
+	}
+	
+	static class Primitives implements LEHAware {
+		boolean z;
+		byte b;
+		char c;
+		short s;
+		int i;
+		long j;
+		float f;
+		double d;
+	}
+	
 }
@@ -0,0 +1,261 @@
+package leh.apt;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a leh.util.LEHPlan for every concrete class implementing
+ * leh.util.LEHAware, so LEH can resolve the roles of the class's fields
+ * without reading their annotations at runtime. Each plan carries a
+ * fingerprint of the names of the class's fields, so a plan left stale by a
+ * change to the class is not used.
+ *
+ * Fields are described in the order leh.util.LEH evaluates them: declaration
+ * order of the class then each of its superclasses, excluding static fields,
+ * honoring @Identity(value) and @Transient as LEH does reflectively. Classes
+ * that cannot be named from their own package (ie private nested classes, or
+ * classes extending inaccessible types) are skipped, and LEH falls back to
+ * reflection for them.
+ *
+ * @see leh.util.LEHPlan
+ */
+@SupportedAnnotationTypes("*")
+public class LEHPlanProcessor extends AbstractProcessor {
+
+	static final String LEH_AWARE = "leh.util.LEHAware";
+	static final String IDENTITY = "leh.annotations.Identity";
+	static final String TRANSIENT = "leh.annotations.Transient";
+	static final String PLAN = "leh.util.LEHPlan";
+	static final String SUFFIX = "_LEHPlan";
+	static final int EQUALS_ROLE = 1;
+	static final int IDENTITY_ROLE = 2;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement lehAware = processingEnv.getElementUtils().getTypeElement(LEH_AWARE);
+		if(lehAware == null){
+			return false;
+		}
+		TypeMirror lehAwareType = processingEnv.getTypeUtils().erasure(lehAware.asType());
+		for(Element element : roundEnv.getRootElements()){
+			visit(element, lehAwareType);
+		}
+		return false;
+	}
+
+	/**
+	 * Generate plans for the supplied element if eligible, and any types
+	 * nested within it.
+	 *
+	 * @param element
+	 * @param lehAwareType
+	 */
+	void visit(Element element, TypeMirror lehAwareType) {
+		if(element.getKind() == ElementKind.CLASS){
+			TypeElement type = (TypeElement)element;
+			if(!type.getModifiers().contains(Modifier.ABSTRACT) &&
+					processingEnv.getTypeUtils().isAssignable(
+							processingEnv.getTypeUtils().erasure(type.asType()), lehAwareType)){
+				generate(type);
+			}
+		}
+		for(Element enclosed : element.getEnclosedElements()){
+			if(enclosed.getKind().isClass() || enclosed.getKind().isInterface()){
+				visit(enclosed, lehAwareType);
+			}
+		}
+	}
+
+	/**
+	 * Writes the plan source for the supplied type, or nothing if any class
+	 * declaring its fields cannot be named from the type's package.
+	 *
+	 * @param type
+	 */
+	void generate(TypeElement type) {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		if(!isAccessible(type, pkg)){
+			return;
+		}
+		List<PlannedField> fields = new ArrayList<PlannedField>();
+		int fingerprint = 1;
+		TypeElement declaring = type;
+		while(declaring != null){
+			for(VariableElement field : ElementFilter.fieldsIn(declaring.getEnclosedElements())){
+				if(field.getModifiers().contains(Modifier.STATIC)){
+					continue;
+				}
+				if(!isAccessible(declaring, pkg)){
+					return;
+				}
+				PlannedField planned = new PlannedField(declaring, field);
+				fingerprint = 31 * fingerprint + planned.name.hashCode();
+				if(planned.roles != 0){
+					fields.add(planned);
+				}
+			}
+			declaring = getSuperclass(declaring);
+		}
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String planName = (packageName.length() == 0 ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+		try {
+			PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(
+					packageName.length() == 0 ? planName : packageName + "." + planName, type).openWriter());
+			try {
+				write(out, packageName, planName, type, fields, fingerprint);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not write " + planName + ": " + e.getMessage(), type);
+		}
+	}
+
+	void write(PrintWriter out, String packageName, String planName, TypeElement type, List<PlannedField> fields, int fingerprint) {
+		if(packageName.length() > 0){
+			out.println("package " + packageName + ";");
+			out.println();
+		}
+		out.println("/**");
+		out.println(" * Generated by " + getClass().getName() + " for " + type.getQualifiedName() + ", do not edit.");
+		out.println(" */");
+		out.println("public final class " + planName + " implements " + PLAN + " {");
+		out.println();
+		out.print("\tprivate static final Class<?>[] DECLARING_CLASSES = {");
+		for(int i = 0; i < fields.size(); i++){
+			out.print((i == 0 ? "" : ", ") + fields.get(i).declaring.getQualifiedName() + ".class");
+		}
+		out.println("};");
+		out.print("\tprivate static final String[] NAMES = {");
+		for(int i = 0; i < fields.size(); i++){
+			out.print((i == 0 ? "" : ", ") + "\"" + fields.get(i).name + "\"");
+		}
+		out.println("};");
+		out.print("\tprivate static final int[] ROLES = {");
+		for(int i = 0; i < fields.size(); i++){
+			out.print((i == 0 ? "" : ", ") + fields.get(i).roles);
+		}
+		out.println("};");
+		out.println();
+		out.println("\tpublic Class<?>[] getDeclaringClasses() {");
+		out.println("\t\treturn DECLARING_CLASSES.clone();");
+		out.println("\t}");
+		out.println();
+		out.println("\tpublic String[] getNames() {");
+		out.println("\t\treturn NAMES.clone();");
+		out.println("\t}");
+		out.println();
+		out.println("\tpublic int[] getRoles() {");
+		out.println("\t\treturn ROLES.clone();");
+		out.println("\t}");
+		out.println();
+		out.println("\tpublic int getFingerprint() {");
+		out.println("\t\treturn " + fingerprint + ";");
+		out.println("\t}");
+		out.println();
+		out.println("}");
+	}
+
+	/**
+	 * Returns the superclass of the supplied type, or null if it has none.
+	 *
+	 * @param type
+	 * @return
+	 */
+	TypeElement getSuperclass(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		if(superclass.getKind() != TypeKind.DECLARED){
+			return null;
+		}
+		return (TypeElement)((DeclaredType)superclass).asElement();
+	}
+
+	/**
+	 * Returns true if the supplied type can be named from the supplied package.
+	 *
+	 * @param type
+	 * @param pkg
+	 * @return
+	 */
+	boolean isAccessible(TypeElement type, PackageElement pkg) {
+		boolean samePackage = processingEnv.getElementUtils().getPackageOf(type).equals(pkg);
+		Element element = type;
+		while(element instanceof TypeElement){
+			TypeElement enclosing = (TypeElement)element;
+			Set<Modifier> modifiers = enclosing.getModifiers();
+			if(enclosing.getNestingKind() == NestingKind.ANONYMOUS || enclosing.getNestingKind() == NestingKind.LOCAL ||
+					modifiers.contains(Modifier.PRIVATE) ||
+					(!samePackage && !modifiers.contains(Modifier.PUBLIC))){
+				return false;
+			}
+			element = enclosing.getEnclosingElement();
+		}
+		return true;
+	}
+
+	/**
+	 * A field as described by a generated plan.
+	 */
+	class PlannedField {
+
+		final TypeElement declaring;
+		final String name;
+		final int roles;
+
+		PlannedField(TypeElement declaring, VariableElement field) {
+			this.declaring = declaring;
+			this.name = field.getSimpleName().toString();
+			boolean isIdentity = false;
+			boolean identityValue = false;
+			boolean isTransient = false;
+			for(AnnotationMirror annotation : field.getAnnotationMirrors()){
+				String annotationName = ((TypeElement)annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+				if(IDENTITY.equals(annotationName)){
+					isIdentity = true;
+					for(Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues().entrySet()){
+						if(value.getKey().getSimpleName().contentEquals("value")){
+							identityValue = Boolean.TRUE.equals(value.getValue().getValue());
+						}
+					}
+				}else if(TRANSIENT.equals(annotationName)){
+					isTransient = true;
+				}
+			}
+			this.roles = (!isTransient && (!isIdentity || identityValue) ? EQUALS_ROLE : 0) |
+						 (isIdentity ? IDENTITY_ROLE : 0);
+		}
+
+	}
+
+}
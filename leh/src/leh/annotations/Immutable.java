@@ -0,0 +1,21 @@
+package leh.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares that no state reachable from instances of the annotated LEHAware
+ * type changes once constructed. leh.util.LEH then computes each instance's
+ * logical hashcode and toString once and remembers them for as long as the
+ * instance is reachable, and deems two instances whose remembered hashcodes
+ * differ unequal without comparing their fields.
+ * 
+ * Not inherited, as subclasses may introduce mutable state.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Immutable {
+
+}
@@ -0,0 +1,437 @@
+package leh.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import leh.annotations.Identity;
+import leh.annotations.Immutable;
+import leh.annotations.Transient;
+
+/**
+ * Everything LEH needs to know about a class to evaluate equals, hashCode and
+ * toString for its instances, resolved once when the class is first
+ * encountered. Evaluations then walk flat arrays of pre-classified accessors
+ * instead of re-deriving field lists, names, and display names per call.
+ */
+class ClassPlan {
+
+	static final FieldAccessor[] NO_FIELDS = new FieldAccessor[0];
+
+	/**
+	 * Mismatches recorded between reorderings of comparisonOrder.
+	 */
+	static final int REORDER_INTERVAL = 256;
+
+	/**
+	 * Plans by class, shared by every thread and LEHDelegate so each class is
+	 * read once per class loader lifetime. Classes are held weakly and plans
+	 * softly, as a plan references its class through its fields: a plan is
+	 * only reclaimed under memory pressure, after which an unloaded class's
+	 * entry is purged and a live class's plan is simply read again.
+	 */
+	private static final WeakIdentityCache<Class<?>, Reference<ClassPlan>> PLANS =
+			new WeakIdentityCache<Class<?>, Reference<ClassPlan>>();
+
+	final Class<?> type;
+
+	/**
+	 * Precomputed seed for logical hash codes of instances of this type.
+	 */
+	final int typeHashCode;
+
+	/**
+	 * Name used to prefix toString representations, anonymous classes are
+	 * named after their first interface or superclass suffixed with $1.
+	 */
+	final String displayName;
+
+	/**
+	 * True if the type is annotated @Immutable, allowing logical hashcodes
+	 * and toString values of its instances to be memoized.
+	 */
+	final boolean immutable;
+
+	/**
+	 * True if any equalsField is not of a value type, so comparing or hashing
+	 * an instance may traverse a subgraph of further instances. Only results
+	 * for such types are worth memoizing within a traversal.
+	 *
+	 * @see leh.util.Evaluated#memoize(Object, Object, int)
+	 */
+	final boolean traversesReferences;
+
+	/**
+	 * Equality/hashcode eligible fields.
+	 *
+	 * @see leh.annotations.Identity for definition of equality/hashcode
+	 *      eligibility.
+	 */
+	final FieldAccessor[] equalsFields;
+
+	/**
+	 * @Identity annotated fields.
+	 */
+	final FieldAccessor[] identityFields;
+
+	/**
+	 * Names of identityFields, shared by the IdentityKeys of every instance.
+	 */
+	final String[] identityNames;
+
+	/**
+	 * Equality/hashcode eligible fields that are not also identity fields, in
+	 * the order they are rendered by toString after the ids={...} section.
+	 */
+	final FieldAccessor[] nonIdentityFields;
+
+	/**
+	 * Every field LEH reads: equalsFields followed by identity fields that do
+	 * not participate in equality.
+	 */
+	final FieldAccessor[] evaluatedFields;
+
+	/**
+	 * Indexes of equalsFields in the order equality compares them, so an
+	 * unequal field is found as cheaply as possible: value typed fields first,
+	 * then other instances, then Iterables, Maps and arrays. Within each, the
+	 * fields found unequal most often come first, reordered as mismatches are
+	 * recorded.
+	 */
+	volatile int[] comparisonOrder;
+
+	/**
+	 * Mismatches by index of equalsFields, and in total, since the last
+	 * reordering. Updated without synchronization, so counts are approximate.
+	 */
+	private final int[] mismatches;
+	private int mismatchCount;
+
+	private ClassPlan(Class<?> type, FieldAccessor[] equalsFields,
+			FieldAccessor[] identityFields, FieldAccessor[] nonIdentityFields) {
+		this.type = type;
+		this.typeHashCode = type.hashCode();
+		this.displayName = getDisplayName(type);
+		this.immutable = type.isAnnotationPresent(Immutable.class);
+		this.equalsFields = equalsFields;
+		this.traversesReferences = traversesReferences(equalsFields);
+		this.identityFields = identityFields;
+		this.identityNames = getNames(identityFields);
+		this.nonIdentityFields = nonIdentityFields;
+		this.evaluatedFields = getEvaluatedFields(equalsFields, identityFields);
+		this.mismatches = new int[equalsFields.length];
+		this.comparisonOrder = getComparisonOrder(equalsFields, mismatches);
+	}
+
+	/**
+	 * Records that the equalsFields field at the supplied index was found
+	 * unequal, reordering comparisonOrder once enough mismatches have been
+	 * recorded. Counts are then halved, so the order follows recent
+	 * mismatches.
+	 *
+	 * @param index
+	 */
+	void recordMismatch(int index) {
+		mismatches[index]++;
+		if(++mismatchCount >= REORDER_INTERVAL){
+			mismatchCount = 0;
+			comparisonOrder = getComparisonOrder(equalsFields, mismatches);
+			for(int i = 0; i < mismatches.length; i++){
+				mismatches[i] >>= 1;
+			}
+		}
+	}
+
+	/**
+	 * Relative cost of comparing values of the field, by its declared type.
+	 *
+	 * @param field
+	 * @return 0 for value types, 2 for Iterables, Maps and arrays, otherwise 1.
+	 */
+	static int getCost(FieldAccessor field) {
+		if(field.isValue){
+			return 0;
+		}
+		Class<?> type = field.field.getType();
+		if(type.isArray() || Iterable.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)){
+			return 2;
+		}
+		return 1;
+	}
+
+	private static int[] getComparisonOrder(final FieldAccessor[] fields, int[] mismatches) {
+		final int[] counts = mismatches.clone();
+		Integer[] order = new Integer[fields.length];
+		for(int i = 0; i < order.length; i++){
+			order[i] = i;
+		}
+		// stable, so fields otherwise alike keep their declared order
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				int cost1 = getCost(fields[i1]);
+				int cost2 = getCost(fields[i2]);
+				if(cost1 != cost2){
+					return cost1 < cost2 ? -1 : 1;
+				}
+				return counts[i1] == counts[i2] ? 0 : (counts[i1] > counts[i2] ? -1 : 1);
+			}
+		});
+		int[] comparisonOrder = new int[order.length];
+		for(int i = 0; i < order.length; i++){
+			comparisonOrder[i] = order[i];
+		}
+		return comparisonOrder;
+	}
+
+	/**
+	 * Returns the cached plan for the class supplied. If no cached plan is
+	 * discovered, then the class is read and its plan is resolved and cached
+	 * before returning it. Plans are immutable once read, and safely published
+	 * through the cache to other threads.
+	 *
+	 * @param type
+	 * @return
+	 */
+	static ClassPlan get(Class<?> type) {
+		ClassPlan plan = getCached(type);
+		if(plan == null){
+			plan = read(type);
+			PLANS.put(type, new SoftReference<ClassPlan>(plan));
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the cached plan for the class supplied, or null if it is not
+	 * cached.
+	 *
+	 * @param type
+	 * @return
+	 */
+	static ClassPlan getCached(Class<?> type) {
+		Reference<ClassPlan> reference = PLANS.get(type);
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * Evaluates a class for equals/hashcode eligible fields and identity
+	 * fields, walking the declared fields of the class and each of its
+	 * superclasses.
+	 *
+	 * @param type
+	 * @return
+	 */
+	static ClassPlan read(Class<?> type) {
+		LEHPlan generated = findGeneratedPlan(type);
+		if(generated != null){
+			ClassPlan plan = read(type, generated);
+			if(plan != null){
+				return plan;
+			}
+		}
+		return readReflectively(type);
+	}
+
+	/**
+	 * Reads the plan by scanning declared fields and their annotations.
+	 *
+	 * @param type
+	 * @return
+	 */
+	static ClassPlan readReflectively(Class<?> type) {
+		List<FieldAccessor> equalsFields = new ArrayList<FieldAccessor>();
+		List<FieldAccessor> identityFields = new ArrayList<FieldAccessor>();
+		List<FieldAccessor> nonIdentityFields = new ArrayList<FieldAccessor>();
+		Class<?> lClass = type;
+		while(lClass != null){
+			for(Field f : lClass.getDeclaredFields()){
+				int roles = getRoles(f);
+				if(roles != 0){
+					add(FieldAccessor.create(f), roles, equalsFields, identityFields, nonIdentityFields);
+				}
+			}
+			lClass = lClass.getSuperclass();
+		}
+		return new ClassPlan(type, toArray(equalsFields), toArray(identityFields), toArray(nonIdentityFields));
+	}
+
+	/**
+	 * Reads the plan from a plan generated at compile time, taking the roles
+	 * of the fields it describes from the plan rather than their annotations.
+	 *
+	 * @param type
+	 * @param generated
+	 * @return the plan, or null if the class changed since its plan was
+	 *         generated.
+	 */
+	static ClassPlan read(Class<?> type, LEHPlan generated) {
+		Field[] fields = getGeneratedFields(type, generated);
+		if(fields == null){
+			return null;
+		}
+		int[] roles = generated.getRoles();
+		List<FieldAccessor> equalsFields = new ArrayList<FieldAccessor>();
+		List<FieldAccessor> identityFields = new ArrayList<FieldAccessor>();
+		List<FieldAccessor> nonIdentityFields = new ArrayList<FieldAccessor>();
+		for(int i = 0; i < fields.length; i++){
+			add(FieldAccessor.create(fields[i]), roles[i], equalsFields, identityFields, nonIdentityFields);
+		}
+		return new ClassPlan(type, toArray(equalsFields), toArray(identityFields), toArray(nonIdentityFields));
+	}
+
+	/**
+	 * Resolves the fields the generated plan describes from the declared
+	 * fields of the class and its superclasses, fingerprinting their names as
+	 * the plan's fingerprint was computed on the way. No annotations are read.
+	 *
+	 * @see leh.util.LEHPlan#getFingerprint()
+	 * @param type
+	 * @param generated
+	 * @return the described fields, or null if the fingerprint differs or a
+	 *         described field was not found.
+	 */
+	static Field[] getGeneratedFields(Class<?> type, LEHPlan generated) {
+		Class<?>[] declaringClasses = generated.getDeclaringClasses();
+		String[] names = generated.getNames();
+		Field[] fields = new Field[names.length];
+		int fingerprint = 1;
+		int i = 0;
+		Class<?> lClass = type;
+		while(lClass != null){
+			for(Field f : lClass.getDeclaredFields()){
+				if(!f.isSynthetic() && !Modifier.isStatic(f.getModifiers())){
+					fingerprint = 31 * fingerprint + f.getName().hashCode();
+					if(i < names.length && declaringClasses[i] == lClass && names[i].equals(f.getName())){
+						fields[i++] = f;
+					}
+				}
+			}
+			lClass = lClass.getSuperclass();
+		}
+		return i == names.length && fingerprint == generated.getFingerprint() ? fields : null;
+	}
+
+	/**
+	 * Returns the LEHPlan role bits of a field: EQUALS unless @Transient or
+	 * annotated @Identity(false), IDENTITY if annotated @Identity. Static and
+	 * synthetic fields have no roles.
+	 *
+	 * @param f
+	 * @return
+	 */
+	static int getRoles(Field f) {
+		if(f.isSynthetic() || Modifier.isStatic(f.getModifiers())){
+			return 0;
+		}
+		Identity identity = f.getAnnotation(Identity.class);
+		int roles = 0;
+		if(!f.isAnnotationPresent(Transient.class) && (identity == null || identity.value())){
+			roles |= LEHPlan.EQUALS;
+		}
+		if(identity != null){
+			roles |= LEHPlan.IDENTITY;
+		}
+		return roles;
+	}
+
+	private static void add(FieldAccessor accessor, int roles, List<FieldAccessor> equalsFields,
+			List<FieldAccessor> identityFields, List<FieldAccessor> nonIdentityFields) {
+		if((roles & LEHPlan.EQUALS) != 0){
+			equalsFields.add(accessor);
+			if((roles & LEHPlan.IDENTITY) == 0){
+				nonIdentityFields.add(accessor);
+			}
+		}
+		if((roles & LEHPlan.IDENTITY) != 0){
+			identityFields.add(accessor);
+		}
+	}
+
+	/**
+	 * Returns the plan generated at compile time for the supplied class, or
+	 * null if none was generated or it cannot be loaded and instantiated.
+	 *
+	 * @param type
+	 * @return
+	 */
+	static LEHPlan findGeneratedPlan(Class<?> type) {
+		// plans are only generated for LEHAware classes, others are not looked up
+		if(!LEHAware.class.isAssignableFrom(type) || type.getClassLoader() == null ||
+				type.isAnonymousClass() || type.isLocalClass()){
+			return null;
+		}
+		try {
+			Class<?> planClass = Class.forName(type.getName() + LEHPlan.SUFFIX, true, type.getClassLoader());
+			if(LEHPlan.class.isAssignableFrom(planClass)){
+				return (LEHPlan)planClass.newInstance();
+			}
+		} catch (ClassNotFoundException e) {
+			// no plan was generated for the type
+		} catch (InstantiationException e) {
+			// not a plan LEH generated, fall back to reflection
+		} catch (IllegalAccessException e) {
+			// not a plan LEH generated, fall back to reflection
+		} catch (LinkageError e) {
+			// plan generated against a different version of the class or LEH
+		}
+		return null;
+	}
+
+	FieldAccessor[] getEqualsFields(boolean isLEHAware) {
+		return isLEHAware ? equalsFields : NO_FIELDS;
+	}
+
+	FieldAccessor[] getIdentityFields(boolean isLEHAware) {
+		return isLEHAware ? identityFields : NO_FIELDS;
+	}
+
+	private static boolean traversesReferences(FieldAccessor[] fields) {
+		for(FieldAccessor field : fields){
+			if(!field.isValue){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String[] getNames(FieldAccessor[] fields) {
+		String[] names = new String[fields.length];
+		for(int i = 0; i < fields.length; i++){
+			names[i] = fields[i].name;
+		}
+		return names;
+	}
+
+	private static FieldAccessor[] getEvaluatedFields(FieldAccessor[] equalsFields, FieldAccessor[] identityFields) {
+		List<FieldAccessor> fields = new ArrayList<FieldAccessor>(Arrays.asList(equalsFields));
+		for(FieldAccessor f : identityFields){
+			if(!fields.contains(f)){
+				fields.add(f);
+			}
+		}
+		return toArray(fields);
+	}
+
+	private static FieldAccessor[] toArray(List<FieldAccessor> fields) {
+		return fields.isEmpty() ? NO_FIELDS : fields.toArray(new FieldAccessor[fields.size()]);
+	}
+
+	private static String getDisplayName(Class<?> instanceClass) {
+		Class<?> tempClass = instanceClass;
+		while(tempClass.isAnonymousClass()){
+			if(tempClass.getInterfaces() != null && tempClass.getInterfaces().length > 0){
+				tempClass = tempClass.getInterfaces()[0];
+			}else{
+				tempClass = tempClass.getSuperclass();
+			}
+		}
+		return tempClass.getSimpleName() + (tempClass == instanceClass ? "" : ("$1"));
+	}
+
+}
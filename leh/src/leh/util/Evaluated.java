@@ -0,0 +1,364 @@
+package leh.util;
+
+import java.util.Arrays;
+
+/**
+ * Identity set of instances already visited while traversing an object graph,
+ * preventing circular references from recurring indefinitely. Lookups are
+ * O(1): small traversals scan a short inline array, larger ones switch to an
+ * open addressed table probed by identity hash.
+ *
+ * Alongside the path, results already computed for pairs of instances are
+ * memoized for the rest of the traversal, so a subgraph shared by many paths
+ * is evaluated once rather than once per path.
+ *
+ * Each thread keeps one instance for reuse, so top level evaluations do not
+ * allocate. Nested evaluations started while it is in use (ie an equals
+ * implementation dispatching back to LEH) receive a fresh instance instead.
+ */
+class Evaluated {
+
+	private static final int INLINE_CAPACITY = 8;
+	private static final int INITIAL_TABLE_CAPACITY = 32;
+
+	/**
+	 * Cleared tables are kept for the next traversal that outgrows the inline
+	 * array, unless grown past this capacity, so one large traversal does not
+	 * pin memory to its thread.
+	 */
+	private static final int MAX_RETAINED_CAPACITY = 1 << 12;
+
+	/**
+	 * Returned by getMemoized for pairs without a memoized result.
+	 */
+	static final long NOT_MEMOIZED = Long.MIN_VALUE;
+
+	private static final ThreadLocal<Evaluated> POOL = new ThreadLocal<Evaluated>() {
+		@Override
+		protected Evaluated initialValue() {
+			return new Evaluated(true);
+		}
+	};
+
+	private final boolean pooled;
+	private boolean inUse;
+	private Object[] inline = new Object[INLINE_CAPACITY];
+	private Object[] table;
+	private Object[] spare;
+	private int size;
+
+	/**
+	 * Open addressed table of memoized results, holding the first and second
+	 * instance of each pair in adjacent slots of memoKeys and the result in
+	 * memoValues, or null until a result is memoized.
+	 */
+	private Object[] memoKeys;
+	private int[] memoValues;
+	private int memoSize;
+
+	/**
+	 * Peak size reached since last cleared: the deepest nesting of instances
+	 * on the path.
+	 */
+	int peakDepth;
+
+	/**
+	 * Instances added since last cleared, counting an instance each time it
+	 * is added back after being removed.
+	 */
+	int visited;
+
+	/**
+	 * Field values read and circular references encountered by the traversal
+	 * since last cleared, maintained by the traversal for LEHMetrics.
+	 */
+	int fieldsRead;
+	int cycles;
+
+	/**
+	 * Logical hashCodes computed by the traversal, since last cleared, that
+	 * a logically equal value need not share: those of Wrappers of instances
+	 * not implementing LEHAware, which compare logically but whose unwrapped
+	 * counterparts hash by their own hashCode.
+	 */
+	int unreliableHashes;
+
+	Evaluated() {
+		this(false);
+	}
+
+	private Evaluated(boolean pooled) {
+		this.pooled = pooled;
+	}
+
+	/**
+	 * Returns an empty instance for a traversal, which must be handed back
+	 * through release() once the traversal completes.
+	 *
+	 * @return
+	 */
+	static Evaluated acquire() {
+		Evaluated evaluated = POOL.get();
+		if(evaluated.inUse){
+			return new Evaluated();
+		}
+		evaluated.inUse = true;
+		return evaluated;
+	}
+
+	/**
+	 * Clears this instance, returning it to its thread for reuse if it came
+	 * from there.
+	 */
+	void release() {
+		if(pooled){
+			clear();
+			inUse = false;
+		}
+	}
+
+	/**
+	 * Adds the instance if it has not already been evaluated.
+	 *
+	 * @param instance
+	 * @return true if the instance was added, false if already present.
+	 */
+	boolean add(Object instance) {
+		if(table == null){
+			for(int i = 0; i < size; i++){
+				if(inline[i] == instance){
+					return false;
+				}
+			}
+			if(size < INLINE_CAPACITY){
+				inline[size++] = instance;
+				visited++;
+				if(size > peakDepth){
+					peakDepth = size;
+				}
+				return true;
+			}
+			table = spare != null ? spare : new Object[INITIAL_TABLE_CAPACITY];
+			spare = null;
+			for(int i = 0; i < size; i++){
+				insert(table, inline[i]);
+				inline[i] = null;
+			}
+		}
+		if(contains(instance)){
+			return false;
+		}
+		if((size + 1) * 2 > table.length){
+			Object[] grown = new Object[table.length * 2];
+			for(Object o : table){
+				if(o != null){
+					insert(grown, o);
+				}
+			}
+			table = grown;
+		}
+		insert(table, instance);
+		size++;
+		visited++;
+		if(size > peakDepth){
+			peakDepth = size;
+		}
+		return true;
+	}
+
+	boolean contains(Object instance) {
+		if(table == null){
+			for(int i = 0; i < size; i++){
+				if(inline[i] == instance){
+					return true;
+				}
+			}
+			return false;
+		}
+		int mask = table.length - 1;
+		for(int i = System.identityHashCode(instance) & mask; table[i] != null; i = (i + 1) & mask){
+			if(table[i] == instance){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the instance, allowing traversals to track only the path to the
+	 * instance currently being evaluated rather than everything visited.
+	 *
+	 * @param instance
+	 */
+	void remove(Object instance) {
+		if(table == null){
+			for(int i = 0; i < size; i++){
+				if(inline[i] == instance){
+					inline[i] = inline[--size];
+					inline[size] = null;
+					return;
+				}
+			}
+			return;
+		}
+		int mask = table.length - 1;
+		int i = System.identityHashCode(instance) & mask;
+		while(table[i] != instance){
+			if(table[i] == null){
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		table[i] = null;
+		size--;
+		// shift back entries probed past the freed slot so lookups still reach them
+		for(int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask){
+			int home = System.identityHashCode(table[j]) & mask;
+			if(i <= j ? (home <= i || home > j) : (home <= i && home > j)){
+				table[i] = table[j];
+				table[j] = null;
+				i = j;
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a new unpooled instance holding the same instances, so a
+	 * traversal may be continued on another thread along the same path.
+	 * Memoized results are not copied.
+	 *
+	 * @return
+	 */
+	Evaluated copy() {
+		Evaluated copy = new Evaluated();
+		if(table == null){
+			for(int i = 0; i < size; i++){
+				copy.add(inline[i]);
+			}
+		}else{
+			for(Object o : table){
+				if(o != null){
+					copy.add(o);
+				}
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Memoizes a result computed for a pair of instances, replacing any result
+	 * memoized for the same pair. Only results that do not depend on the path
+	 * to the pair may be memoized: those computed without meeting a circular
+	 * reference. Such a result holds wherever the pair is met again in the
+	 * traversal, including within a trial comparison that fails, so memoized
+	 * results are never rolled back.
+	 *
+	 * @param first
+	 * @param second
+	 *            or null for results computed for the first instance alone.
+	 * @param value
+	 */
+	void memoize(Object first, Object second, int value) {
+		if(memoKeys == null){
+			memoKeys = new Object[INITIAL_TABLE_CAPACITY * 2];
+			memoValues = new int[INITIAL_TABLE_CAPACITY];
+		}else if((memoSize + 1) * 2 > memoValues.length){
+			Object[] keys = memoKeys;
+			int[] values = memoValues;
+			memoKeys = new Object[keys.length * 2];
+			memoValues = new int[values.length * 2];
+			for(int i = 0; i < values.length; i++){
+				if(keys[2 * i] != null){
+					putMemo(keys[2 * i], keys[2 * i + 1], values[i]);
+				}
+			}
+		}
+		if(putMemo(first, second, value)){
+			memoSize++;
+		}
+	}
+
+	/**
+	 * @param first
+	 * @param second
+	 *            or null for results computed for the first instance alone.
+	 * @return the result memoized for the pair, or NOT_MEMOIZED.
+	 */
+	long getMemoized(Object first, Object second) {
+		if(memoSize == 0){
+			return NOT_MEMOIZED;
+		}
+		int mask = memoValues.length - 1;
+		for(int i = getMemoHash(first, second) & mask; memoKeys[2 * i] != null; i = (i + 1) & mask){
+			if(memoKeys[2 * i] == first && memoKeys[2 * i + 1] == second){
+				return memoValues[i];
+			}
+		}
+		return NOT_MEMOIZED;
+	}
+
+	/**
+	 * @return true if the pair was not already held.
+	 */
+	private boolean putMemo(Object first, Object second, int value) {
+		int mask = memoValues.length - 1;
+		int i = getMemoHash(first, second) & mask;
+		while(memoKeys[2 * i] != null){
+			if(memoKeys[2 * i] == first && memoKeys[2 * i + 1] == second){
+				memoValues[i] = value;
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		memoKeys[2 * i] = first;
+		memoKeys[2 * i + 1] = second;
+		memoValues[i] = value;
+		return true;
+	}
+
+	private static int getMemoHash(Object first, Object second) {
+		int hash = 31 * System.identityHashCode(first) + (second == null ? 0 : System.identityHashCode(second));
+		return hash ^ (hash >>> 16);
+	}
+
+	void clear() {
+		if(table == null){
+			Arrays.fill(inline, 0, size, null);
+		}else{
+			if(table.length <= MAX_RETAINED_CAPACITY){
+				Arrays.fill(table, null);
+				spare = table;
+			}
+			table = null;
+		}
+		if(memoSize > 0){
+			if(memoValues.length <= MAX_RETAINED_CAPACITY){
+				Arrays.fill(memoKeys, null);
+			}else{
+				memoKeys = null;
+				memoValues = null;
+			}
+			memoSize = 0;
+		}
+		size = 0;
+		peakDepth = 0;
+		visited = 0;
+		fieldsRead = 0;
+		cycles = 0;
+		unreliableHashes = 0;
+	}
+
+	private static void insert(Object[] table, Object instance) {
+		int mask = table.length - 1;
+		int i = System.identityHashCode(instance) & mask;
+		while(table[i] != null){
+			i = (i + 1) & mask;
+		}
+		table[i] = instance;
+	}
+
+}
@@ -0,0 +1,104 @@
+package leh.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+/**
+ * A field resolved once for reflective reads. Access checks are suppressed a
+ * single time when the accessor is created, rather than toggled on every read,
+ * so repeated equals/hashCode/toString evaluations only pay for the read itself.
+ *
+ * The Field held is a private copy (Class.getDeclaredFields returns copies) so
+ * suppressing its access checks does not leak to other users of the class.
+ */
+class FieldAccessor {
+
+	final Field field;
+	final String name;
+	final int nameHashCode;
+
+	/**
+	 * True if the declared type of the field guarantees its values are
+	 * evaluated by their own equals/hashCode/toString (primitives, enums and
+	 * final types that are neither LEHAware, Iterable, nor Map), letting
+	 * evaluations skip the generic LEH dispatch for its values.
+	 */
+	final boolean isValue;
+
+	/**
+	 * False if access checks could not be suppressed (ie a security manager or
+	 * module boundary refused), in which case reads return null as LEH always
+	 * has for inaccessible fields.
+	 */
+	final boolean readable;
+
+	FieldAccessor(Field field) {
+		this.field = field;
+		this.name = field.getName();
+		this.nameHashCode = name.hashCode();
+		this.isValue = isValueType(field.getType());
+		boolean readable;
+		try {
+			field.setAccessible(true);
+			readable = true;
+		} catch (Throwable e) {
+			readable = false;
+		}
+		this.readable = readable;
+	}
+
+	/**
+	 * Returns an accessor for the field, specialized for primitive fields.
+	 *
+	 * @see leh.util.PrimitiveFieldAccessor
+	 * @param field
+	 * @return
+	 */
+	static FieldAccessor create(Field field) {
+		return field.getType().isPrimitive() ? new PrimitiveFieldAccessor(field) : new FieldAccessor(field);
+	}
+
+	/**
+	 * Read the field's value from the supplied (already unwrapped) instance.
+	 *
+	 * @param instance
+	 * @return
+	 */
+	Object get(Object instance) {
+		if(!readable || instance == null){
+			return null;
+		}
+		try {
+			return field.get(instance);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	static boolean isValueType(Class<?> type) {
+		if(type.isPrimitive()){
+			return true;
+		}
+		if(type.isArray() || 
+				LEHAware.class.isAssignableFrom(type) ||
+				Iterable.class.isAssignableFrom(type) ||
+				Map.class.isAssignableFrom(type)){
+			return false;
+		}
+		return type.isEnum() || Modifier.isFinal(type.getModifiers());
+	}
+
+	String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return field.toString();
+	}
+
+}
@@ -0,0 +1,165 @@
+package leh.util;
+
+import java.util.Arrays;
+
+/**
+ * Items grouped by a precomputed int hash, used to narrow logical equality
+ * matching between two collections to candidates sharing a logical hash.
+ * Matched items can be removed so each is paired at most once, which gives
+ * collection comparisons multiset semantics.
+ *
+ * Nodes are addressed by index: first(hash) and next(node) walk the live items
+ * sharing a hash, while firstLive() and nextLive(node) walk every live item
+ * regardless of hash. Removed nodes are unlinked from both walks, so each
+ * step is O(1) however many items were removed. A removed node must not be
+ * passed to next or nextLive.
+ */
+class HashBuckets {
+
+	private final int[] heads;
+	private final int[] hashes;
+	private final int[] next;
+	private final int[] previous;
+	private final int[] nextLive;
+	private final int[] previousLive;
+	private final Object[] items;
+	private final boolean[] removed;
+	private int firstLive = -1;
+	private int lastLive = -1;
+	private int size;
+	private int live;
+
+	HashBuckets(int expectedSize) {
+		int capacity = 1;
+		while(capacity < expectedSize * 2){
+			capacity <<= 1;
+		}
+		this.heads = new int[capacity];
+		Arrays.fill(heads, -1);
+		this.hashes = new int[Math.max(expectedSize, 1)];
+		this.next = new int[hashes.length];
+		this.previous = new int[hashes.length];
+		this.nextLive = new int[hashes.length];
+		this.previousLive = new int[hashes.length];
+		this.items = new Object[hashes.length];
+		this.removed = new boolean[hashes.length];
+	}
+
+	/**
+	 * Adds an item, at most expectedSize items may be added.
+	 *
+	 * @param hash
+	 * @param item
+	 */
+	void add(int hash, Object item) {
+		int slot = spread(hash) & (heads.length - 1);
+		hashes[size] = hash;
+		items[size] = item;
+		next[size] = heads[slot];
+		previous[size] = -1;
+		if(heads[slot] != -1){
+			previous[heads[slot]] = size;
+		}
+		heads[slot] = size;
+		nextLive[size] = -1;
+		previousLive[size] = lastLive;
+		if(lastLive == -1){
+			firstLive = size;
+		}else{
+			nextLive[lastLive] = size;
+		}
+		lastLive = size;
+		size++;
+		live++;
+	}
+
+	/**
+	 * @param hash
+	 * @return the first live node with the supplied hash, or -1.
+	 */
+	int first(int hash) {
+		return skip(heads[spread(hash) & (heads.length - 1)], hash);
+	}
+
+	/**
+	 * @param node
+	 * @return the next live node with the same hash as the supplied node, or -1.
+	 */
+	int next(int node) {
+		return skip(next[node], hashes[node]);
+	}
+
+	/**
+	 * @return the first live node, or -1.
+	 */
+	int firstLive() {
+		return firstLive;
+	}
+
+	/**
+	 * @param node
+	 * @return the next live node after the supplied node, or -1.
+	 */
+	int nextLive(int node) {
+		return nextLive[node];
+	}
+
+	Object get(int node) {
+		return items[node];
+	}
+
+	/**
+	 * Removes the node, unlinking it from its bucket and from the live nodes.
+	 * Removing a node already removed has no effect.
+	 *
+	 * @param node
+	 */
+	void remove(int node) {
+		if(removed[node]){
+			return;
+		}
+		removed[node] = true;
+		items[node] = null;
+		live--;
+		if(previous[node] == -1){
+			heads[spread(hashes[node]) & (heads.length - 1)] = next[node];
+		}else{
+			next[previous[node]] = next[node];
+		}
+		if(next[node] != -1){
+			previous[next[node]] = previous[node];
+		}
+		if(previousLive[node] == -1){
+			firstLive = nextLive[node];
+		}else{
+			nextLive[previousLive[node]] = nextLive[node];
+		}
+		if(nextLive[node] == -1){
+			lastLive = previousLive[node];
+		}else{
+			previousLive[nextLive[node]] = previousLive[node];
+		}
+	}
+
+	/**
+	 * @return the number of items added and not removed.
+	 */
+	int size() {
+		return live;
+	}
+
+	/**
+	 * Skips nodes in the same bucket whose hash differs.
+	 */
+	private int skip(int node, int hash) {
+		while(node != -1 && hashes[node] != hash){
+			node = next[node];
+		}
+		return node;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+}
@@ -0,0 +1,120 @@
+package leh.util;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The values of an instance's @Identity fields, as an immutable key for hashed
+ * collections, ie HashMap or ConcurrentHashMap, matching the keys of every
+ * instance (or Wrapper or Snapshot of one) with the same identity.
+ *
+ * Values are held unwrapped in a flat array beside the field names, which are
+ * shared by the keys of every instance of a class, and the hashCode is
+ * computed once. Values of LEHAware types, Iterables, Maps and arrays are
+ * compared logically, others through their own equals.
+ *
+ * @see leh.annotations.Identity
+ * @see leh.util.LEHDelegate#getIdentityKey(Object)
+ */
+public final class IdentityKey {
+
+	private final LEHDelegate leh;
+	private final String[] names;
+	private final Object[] values;
+	private final int hashCode;
+
+	IdentityKey(LEHDelegate leh, String[] names, Object[] values, int hashCode) {
+		this.leh = leh;
+		this.names = names;
+		this.values = values;
+		this.hashCode = hashCode;
+	}
+
+	/**
+	 * @return the number of identity fields.
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the name of the identity field at index.
+	 */
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @param index
+	 * @return the value of the identity field at index.
+	 */
+	public Object getValue(int index) {
+		return values[index];
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(obj == this){
+			return true;
+		}
+		if(!(obj instanceof IdentityKey)){
+			return false;
+		}
+		IdentityKey key = (IdentityKey)obj;
+		if(hashCode != key.hashCode || values.length != key.values.length ||
+				(names != key.names && !Arrays.equals(names, key.names))){
+			return false;
+		}
+		for(int i = 0; i < values.length; i++){
+			if(!isEqual(values[i], key.values[i])){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for(int i = 0; i < values.length; i++){
+			if(i > 0){
+				sb.append(", ");
+			}
+			sb.append(names[i]).append('=');
+			sb.append(isPlain(values[i]) ? String.valueOf(values[i]) : leh.getToString(values[i]));
+		}
+		return sb.append('}').toString();
+	}
+
+	private boolean isEqual(Object value1, Object value2) {
+		if(value1 == value2){
+			return true;
+		}
+		if(value1 == null || value2 == null){
+			return false;
+		}
+		if(isPlain(value1) && isPlain(value2)){
+			return value1.equals(value2);
+		}
+		return LEH.isKeyEqual(leh, value1, value2);
+	}
+
+	/**
+	 * Returns true if the value is compared and hashed through its own equals
+	 * and hashCode, rather than logically.
+	 *
+	 * @param value
+	 * @return
+	 */
+	static boolean isPlain(Object value) {
+		return !(value instanceof LEHAware || value instanceof Iterable<?> || value instanceof Map<?,?> ||
+				(value != null && value.getClass().isArray()));
+	}
+
+}
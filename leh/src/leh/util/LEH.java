@@ -1,20 +1,27 @@
 package leh.util;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-
-import leh.annotations.Identity;
-import leh.annotations.Transient;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A utility class that operates on Entity instances or on the presumption of an
@@ -23,22 +30,32 @@ import leh.annotations.Transient;
  */
 public class LEH {
 	
-	private static Map<Long, LEHDelegate> delegateByThread = new ConcurrentHashMap<Long, LEHDelegate>(); 
+	/**
+	 * LEHInstance holds no state of its own beyond thread safe memoized values
+	 * (class plans are shared through ClassPlan), so a single instance serves
+	 * every thread.
+	 */
+	private static final LEHDelegate INSTANCE = new LEHInstance(LEHConfiguration.DEFAULT);
 	
 	/**
-	 * Returns a thread confined, referentially transparent, and immutable
-	 * version of the singleton.
+	 * Returns a thread safe, referentially transparent, and immutable
+	 * singleton.
 	 * 
 	 * @return
 	 */
-	public static synchronized LEHDelegate getInstance(){
-		long theadId = Thread.currentThread().getId();
-		LEHDelegate delegate = delegateByThread.get(theadId);
-		if(delegate == null){
-			delegate = new LEHInstance();
-			delegateByThread.put(theadId, delegate);
-		}
-		return delegate;
+	public static LEHDelegate getInstance(){
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns a thread safe, referentially transparent, and immutable instance
+	 * evaluating per the supplied configuration.
+	 * 
+	 * @param configuration
+	 * @return
+	 */
+	public static LEHDelegate getInstance(LEHConfiguration configuration){
+		return configuration == LEHConfiguration.DEFAULT ? INSTANCE : new LEHInstance(configuration);
 	}
 
 	/**
@@ -50,35 +67,119 @@ public class LEH {
 	 * @param value
 	 * @return
 	 */
-	public static synchronized Wrapper getInstance(final Object value) {
-		return getInstance().getInstance(value);
+	public static Wrapper getInstance(final Object value) {
+		return INSTANCE.getInstance(value);
+	}
+	
+	/**
+	 * Syntactic sugar replacing getInstance().getSnapshot(Object instance) calls.
+	 * 
+	 * @see leh.util.LEHDelegate#getSnapshot(Object)
+	 * @param value
+	 * @return
+	 */
+	public static Wrapper getSnapshot(final Object value) {
+		return INSTANCE.getSnapshot(value);
+	}
+	
+	/**
+	 * Returns the hashCode of a key as the delegate compares keys, without
+	 * allocating the adapter returned by getHashCode.
+	 * 
+	 * @see leh.util.LEHMap
+	 * @param leh
+	 * @param key
+	 * @return
+	 */
+	static int getKeyHashCode(LEHDelegate leh, Object key) {
+		if(leh instanceof LEHInstance){
+			return ((LEHInstance)leh).getKeyHashCode(key);
+		}
+		return leh.getHashCode(key).hashCode();
+	}
+	
+	/**
+	 * Returns true if the keys are logically equal per the delegate, without
+	 * allocating the adapter returned by getEquals.
+	 * 
+	 * @see leh.util.LEHMap
+	 * @param leh
+	 * @param key1
+	 * @param key2
+	 * @return
+	 */
+	static boolean isKeyEqual(LEHDelegate leh, Object key1, Object key2) {
+		if(leh instanceof LEHInstance){
+			return ((LEHInstance)leh).isEqual(key1, key2);
+		}
+		return leh.getEquals(key1).equals(key2);
 	}
 	
 	private static class LEHInstance implements LEHDelegate {
+		
+		/**
+		 * Number of leading elements of RandomAccess lists compared by their
+		 * known hashCodes before comparing any element deeply.
+		 */
+		static final int HASH_PRECHECK_LENGTH = 8;
+		
 		/**
-		 * List of @Identity annotated fields as discovered via reflection, by
-		 * class. Acts as local cache mitigating performance hit associated with
-		 * repetitive reflective discovery.
+		 * Returned by getKnownLogicalHashCode when no hashcode is available,
+		 * distinct from every int hashcode.
 		 */
-		final Map<Class<?>, List<Field>> identityFields;
+		static final long UNKNOWN_HASH_CODE = Long.MIN_VALUE;
 		
 		/**
-		 * List of equality/hashcode eligible fields as discovered via reflection,
-		 * by class*. Acts as local cache mitigating performance hit associated with
-		 * repetitive reflective discovery.
+		 * Bounds on how parallel comparisons are split into tasks.
 		 * 
-		 * @see leh.annotations.Identity for definition of equality/hashcode
-		 *      eligibility.
+		 * @see #getChunkSize(int)
 		 */
-		final Map<Class<?>, List<Field>> equalsHashCodeFields;
+		static final int TASKS_PER_PROCESSOR = 4;
+		static final int MIN_TASK_SIZE = 256;
+		
+		/**
+		 * Set while a thread runs a ParallelTask.
+		 */
+		static final ThreadLocal<Boolean> IN_PARALLEL_TASK = new ThreadLocal<Boolean>();
+		
+		/**
+		 * Contents of the IdentityKeys of null and of instances without
+		 * identity fields.
+		 */
+		static final String[] NO_NAMES = new String[0];
+		static final Object[] NO_VALUES = new Object[0];
+		
+		final LEHConfiguration configuration;
+		
+		/**
+		 * Receiver of measurements, or null if operations are not measured.
+		 */
+		final LEHMetrics metrics;
+		
+		/**
+		 * Logical hashcodes and toString values of @Immutable instances, by
+		 * instance, as computed when evaluated at the top level.
+		 * 
+		 * @see leh.annotations.Immutable
+		 */
+		final WeakIdentityCache<Object, Integer> hashCodes = new WeakIdentityCache<Object, Integer>();
+		final WeakIdentityCache<Object, String> toStrings = new WeakIdentityCache<Object, String>();
+		
+		/**
+		 * Set once any hashcode is memoized, until then hashCodes is not
+		 * consulted when prechecking equality.
+		 */
+		volatile boolean memoizedHashCodes;
 		
 		/**
 		 * ToString adapter for Map.entrySet
 		 */
 		final ToStringFunction mapToStringFunction = new ToStringFunction() {
-			public String toString(Object o, List<Object> evaluated) {
+			public void append(Object o, ToStringWriter out, Evaluated evaluated) throws IOException {
 				Entry<?, ?> entry = (Entry<?, ?>)o;
-				return getToString((Object)entry.getKey(), evaluated) + "=" + getToString(entry.getValue(), evaluated);
+				appendToString(entry.getKey(), out, evaluated);
+				out.append('=');
+				appendToString(entry.getValue(), out, evaluated);
 			}
 		};
 		
@@ -86,31 +187,14 @@ public class LEH {
 		 * ToString adapter for Object
 		 */
 		final ToStringFunction iterableToStringFunction = new ToStringFunction() {
-			public String toString(Object o, List<Object> evaluated) {
-				return getToString(o, evaluated);
+			public void append(Object o, ToStringWriter out, Evaluated evaluated) throws IOException {
+				appendToString(o, out, evaluated);
 			}
 		};
 		
-		/**
-		 * Constructor used internally for mutable reference to singleton instance.
-		 */
-		LEHInstance(){
-			this(new LinkedHashMap<Class<?>, List<Field>>(),
-				 new LinkedHashMap<Class<?>, List<Field>>());
-		}
-		
-		/**
-		 * Construct a new instance with the passed in identity and
-		 * equality/hashcode fields by class. Used exclusively internally
-		 * as references supplied to this constructor are mutated.
-		 * 
-		 * @param identities
-		 * @param logicallyEqualFields
-		 */
-		LEHInstance(Map<Class<?>, List<Field>> identities,
-				Map<Class<?>, List<Field>> logicallyEqualFields) {
-			this.identityFields = identities;
-			this.equalsHashCodeFields = logicallyEqualFields;
+		LEHInstance(LEHConfiguration configuration){
+			this.configuration = configuration;
+			this.metrics = configuration.getMetrics();
 		}
 		
 		public Object getEquals(final Object instance1) {
@@ -167,17 +251,533 @@ public class LEH {
 			};
 		}
 		
+		public <A extends Appendable> A appendToString(Object instance, A appendable) throws IOException {
+			return appendToString(instance, isLEHAware(instance), appendable);
+		}
+		
+		public Wrapper getSnapshot(Object instance) {
+			return instance instanceof Snapshot ? (Snapshot)instance : new Snapshot(resolveInstance(instance));
+		}
+		
+		/**
+		 * Wrapper over the state of an instance as of when it was wrapped. The
+		 * values of its evaluated fields are read once into an array, copying
+		 * Iterable and Map values, and the logical hashCode is computed once.
+		 * Equality is then tested against the captured values, so later
+		 * mutation of the instance is not observed. Instances referenced by
+		 * the captured values are not copied, and are still evaluated as they
+		 * are when compared.
+		 * 
+		 * Iterables and Maps are snapshotted as a whole, by copy.
+		 */
+		class Snapshot implements Wrapper {
+			
+			private static final long serialVersionUID = -4318240372046196211L;
+			
+			final Object instance;
+			
+			/**
+			 * Plan of the instance's class, or null if the instance is null,
+			 * an Iterable, a Map or an array.
+			 */
+			final ClassPlan plan;
+			
+			/**
+			 * Values of plan.evaluatedFields, or only the copied instance if
+			 * there is no plan.
+			 */
+			final Object[] values;
+			
+			final int hashCode;
+			
+			/**
+			 * True if a logically equal value need not share hashCode.
+			 * 
+			 * @see #isReliable(Evaluated)
+			 */
+			final boolean unreliableHashCode;
+			
+			Snapshot(Object instance) {
+				this.instance = instance;
+				Evaluated evaluated = Evaluated.acquire();
+				try {
+					if(instance == null || instance instanceof Iterable || instance instanceof Map || 
+							instance.getClass().isArray()){
+						this.plan = null;
+						this.values = new Object[]{copy(instance)};
+						this.hashCode = getValueHashCode(values[0], evaluated);
+					}else{
+						this.plan = getPlan(instance.getClass());
+						this.values = new Object[plan.evaluatedFields.length];
+						for(int i = 0; i < values.length; i++){
+							values[i] = copy(plan.evaluatedFields[i].get(instance));
+						}
+						evaluated.add(instance);
+						int hashCode = plan.typeHashCode;
+						for(int i = 0; i < plan.equalsFields.length; i++){
+							hashCode += getFieldHashCode(plan.equalsFields[i], values[i], evaluated);
+						}
+						this.hashCode = hashCode;
+						if(!isLEHAware(instance)){
+							evaluated.unreliableHashes++;
+						}
+					}
+					this.unreliableHashCode = !isReliable(evaluated);
+				} finally {
+					evaluated.release();
+				}
+			}
+			
+			/**
+			 * Return the instance this snapshot was taken of, whose state may
+			 * since have changed.
+			 **/
+			public Object getWrappedInstance() {
+				return instance;
+			}
+			
+			Object getValue(FieldAccessor field) {
+				for(int i = 0; plan != null && i < values.length; i++){
+					if(plan.evaluatedFields[i] == field){
+						return values[i];
+					}
+				}
+				return null;
+			}
+			
+			boolean isEqual(Object obj, Evaluated evaluated) {
+				// hashcodes of graphs with circular references depend on where the cycle is entered
+				if(obj instanceof Snapshot && !unreliableHashCode && !((Snapshot)obj).unreliableHashCode && 
+						((Snapshot)obj).hashCode != hashCode){
+					return false;
+				}
+				if(plan == null){
+					return areValuesEqual(values[0], obj instanceof Snapshot ? 
+							((Snapshot)obj).values[0] : resolveInstance(obj), evaluated);
+				}
+				if(!evaluated.add(instance)){
+					evaluated.cycles++;
+					return hashCode == getCycleHashCode(obj);
+				}
+				Snapshot snapshot = obj instanceof Snapshot ? (Snapshot)obj : null;
+				Object resolved = snapshot == null ? resolveInstance(obj) : null;
+				Object other = snapshot != null ? snapshot : resolved;
+				boolean equal = snapshot != null ? snapshot.plan == plan : 
+						resolved != null && resolved.getClass() == plan.type;
+				long memoized = equal && plan.traversesReferences ? 
+						evaluated.getMemoized(this, other) : Evaluated.NOT_MEMOIZED;
+				if(memoized != Evaluated.NOT_MEMOIZED){
+					evaluated.remove(instance);
+					return memoized != 0;
+				}
+				int cycles = evaluated.cycles;
+				if(equal){
+					for(int i : plan.comparisonOrder){
+						FieldAccessor field = plan.equalsFields[i];
+						evaluated.fieldsRead++;
+						if(!areFieldValuesEqual(field, values[i], 
+								snapshot != null ? snapshot.values[i] : field.get(resolved), evaluated)){
+							plan.recordMismatch(i);
+							equal = false;
+							break;
+						}
+					}
+					if(plan.traversesReferences && evaluated.cycles == cycles){
+						evaluated.memoize(this, other, equal ? 1 : 0);
+					}
+				}
+				evaluated.remove(instance);
+				return equal;
+			}
+			
+			@Override
+			public boolean equals(Object obj) {
+				if(obj == this){
+					return true;
+				}
+				Evaluated evaluated = Evaluated.acquire();
+				try {
+					return isEqual(obj, evaluated);
+				} finally {
+					evaluated.release();
+				}
+			}
+			
+			@Override
+			public int hashCode() {
+				return hashCode;
+			}
+			
+			@Override
+			public String toString() {
+				return plan == null ? getToString(values[0], isLEHAware(values[0])) : getToString(this, true);
+			}
+			
+		}
+		
+		/**
+		 * Copy Iterable and Map values for a Snapshot, preserving how they
+		 * compare and render: Lists and ordered Sets remain so, while other Sets
+		 * and Iterables are hidden behind unmodifiable views so they are still
+		 * compared as unordered.
+		 * 
+		 * @param value
+		 * @return
+		 */
+		Object copy(Object value) {
+			if(value instanceof List){
+				return new ArrayList<Object>((List<?>)value);
+			}else if(value instanceof LinkedHashSet || value instanceof SortedSet){
+				return new LinkedHashSet<Object>((Set<?>)value);
+			}else if(value instanceof Set){
+				return Collections.unmodifiableSet(new LinkedHashSet<Object>((Set<?>)value));
+			}else if(value instanceof Iterable){
+				return Collections.unmodifiableCollection(toList((Iterable<?>)value));
+			}else if(value instanceof Map){
+				return new LinkedHashMap<Object, Object>((Map<?, ?>)value);
+			}else if(value != null && value.getClass().isArray()){
+				int length = Array.getLength(value);
+				Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+				System.arraycopy(value, 0, copy, 0, length);
+				return copy;
+			}
+			return value;
+		}
+		
+		public Iterable<String> getDiff(Object instance1, Object instance2) {
+			return getDiff(instance1, instance2, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		}
+		
+		public Iterable<String> getDiff(final Object instance1, final Object instance2, final int maxDifferences, final int maxDepth) {
+			if(maxDifferences < 1 || maxDepth < 0){
+				throw new IllegalArgumentException("maxDifferences must be positive and maxDepth not negative: " + 
+						maxDifferences + ", " + maxDepth);
+			}
+			return new Iterable<String>() {
+				public Iterator<String> iterator() {
+					return new DiffIterator(instance1, instance2, maxDifferences, maxDepth);
+				}
+			};
+		}
+		
+		/**
+		 * A pair of unequal values found walking two object graphs, and where
+		 * they were found relative to the pair they were read from.
+		 */
+		static class Difference {
+			
+			static final int ROOT = 0;
+			static final int FIELD = 1;
+			static final int INDEX = 2;
+			static final int KEY = 3;
+			
+			final Difference parent;
+			final int kind;
+			final String name;
+			final int index;
+			final Object key;
+			final Object value1;
+			final Object value2;
+			final int depth;
+			
+			Difference(Difference parent, int kind, String name, int index, Object key, Object value1, Object value2) {
+				this.parent = parent;
+				this.kind = kind;
+				this.name = name;
+				this.index = index;
+				this.key = key;
+				this.value1 = value1;
+				this.value2 = value2;
+				this.depth = parent == null ? 0 : parent.depth + 1;
+			}
+			
+		}
+		
+		/**
+		 * Walks two unequal object graphs depth first, yielding the path of each
+		 * difference as it is found. Only pairs already found unequal are
+		 * descended into, comparing their fields, elements or entries as
+		 * areValuesEqual does, so equal subtrees are passed over after a
+		 * single comparison and allocations are proportional to the
+		 * differences found.
+		 * 
+		 * A pair is reported rather than descended into if it is at maxDepth,
+		 * or cannot be decomposed further: values LEH compares by their own
+		 * equals, instances of differing classes, and unordered Iterables
+		 * whose elements cannot be paired. Circular references back to a pair
+		 * already being descended into are not followed.
+		 */
+		class DiffIterator implements Iterator<String> {
+			
+			final List<Difference> stack = new ArrayList<Difference>();
+			final int maxDepth;
+			int remaining;
+			String next;
+			
+			DiffIterator(Object instance1, Object instance2, int maxDifferences, int maxDepth) {
+				this.maxDepth = maxDepth;
+				this.remaining = maxDifferences;
+				if(!isEqual(instance1, instance2, isLEHAware(instance1))){
+					stack.add(new Difference(null, Difference.ROOT, null, -1, null, instance1, instance2));
+				}
+			}
+			
+			public boolean hasNext() {
+				while(next == null && remaining > 0 && !stack.isEmpty()){
+					Difference difference = stack.remove(stack.size() - 1);
+					List<Difference> children = difference.depth < maxDepth ? getDifferences(difference) : null;
+					if(children == null){
+						next = getPath(difference);
+						remaining--;
+					}else{
+						for(int i = children.size() - 1; i >= 0; i--){
+							stack.add(children.get(i));
+						}
+					}
+				}
+				return next != null;
+			}
+			
+			public String next() {
+				if(!hasNext()){
+					throw new NoSuchElementException();
+				}
+				String path = next;
+				next = null;
+				return path;
+			}
+			
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			
+			/**
+			 * Returns the unequal pairs of fields, elements or entries of the
+			 * supplied difference's values, or null if they cannot be
+			 * decomposed.
+			 * 
+			 * @param difference
+			 * @return
+			 */
+			List<Difference> getDifferences(Difference difference) {
+				Object value1 = getDiffValue(difference.value1);
+				Object value2 = getDiffValue(difference.value2);
+				if(value1 == null || value2 == null){
+					return null;
+				}
+				if(isCircular(difference)){
+					return Collections.emptyList();
+				}
+				Evaluated evaluated = Evaluated.acquire();
+				try {
+					if(value1 instanceof Map && value2 instanceof Map){
+						return getEntryDifferences(difference, (Map<?, ?>)value1, (Map<?, ?>)value2, evaluated);
+					}
+					if(isIndexed(value1) && isIndexed(value2)){
+						return getElementDifferences(difference, getIndexed(value1), getIndexed(value2), evaluated);
+					}
+					if(value1 instanceof Iterable || value2 instanceof Iterable || 
+							!isLEHAware(difference.value1) || resolveClass(value1) != resolveClass(value2)){
+						return null;
+					}
+					List<Difference> differences = new ArrayList<Difference>();
+					for(FieldAccessor field : getPlan(resolveClass(value1)).equalsFields){
+						Object fieldValue1 = getValue(field, value1);
+						Object fieldValue2 = getValue(field, value2);
+						if(!areFieldValuesEqual(field, fieldValue1, fieldValue2, evaluated)){
+							differences.add(new Difference(difference, Difference.FIELD, field.getName(), -1, null, fieldValue1, fieldValue2));
+						}
+					}
+					return differences;
+				} finally {
+					evaluated.release();
+				}
+			}
+			
+			List<Difference> getElementDifferences(Difference difference, List<?> list1, List<?> list2, Evaluated evaluated) {
+				List<Difference> differences = new ArrayList<Difference>();
+				for(int i = 0, size = Math.max(list1.size(), list2.size()); i < size; i++){
+					if(i >= list1.size() || i >= list2.size()){
+						differences.add(new Difference(difference, Difference.INDEX, null, i, null, 
+								i < list1.size() ? list1.get(i) : null, i < list2.size() ? list2.get(i) : null));
+					}else if(!areValuesEqual(list1.get(i), list2.get(i), evaluated)){
+						differences.add(new Difference(difference, Difference.INDEX, null, i, null, list1.get(i), list2.get(i)));
+					}
+				}
+				return differences;
+			}
+			
+			/**
+			 * Pairs entries by logically equal keys as getMapEquals does, a key
+			 * present in only one map is reported with a null value opposite.
+			 */
+			List<Difference> getEntryDifferences(Difference difference, Map<?, ?> map1, Map<?, ?> map2, Evaluated evaluated) {
+				List<Difference> differences = new ArrayList<Difference>();
+				HashBuckets buckets = new HashBuckets(map2.size());
+				Evaluated hashing = new Evaluated();
+				boolean reliable2 = true;
+				for(Entry<?, ?> entry2 : map2.entrySet()){
+					buckets.add(getLogicalHashCode(entry2.getKey(), hashing), entry2);
+					reliable2 &= isReliable(hashing);
+				}
+				for(Entry<?, ?> entry1 : map1.entrySet()){
+					Object key1 = entry1.getKey();
+					int hashCode = getLogicalHashCode(key1, hashing);
+					int node = findEqual(key1, hashCode, buckets, true, !reliable2 || !isReliable(hashing), evaluated);
+					Object value2 = node == -1 ? null : ((Entry<?, ?>)buckets.get(node)).getValue();
+					if(node == -1 || !areValuesEqual(entry1.getValue(), value2, evaluated)){
+						differences.add(new Difference(difference, Difference.KEY, null, -1, key1, entry1.getValue(), value2));
+					}
+					if(node != -1){
+						buckets.remove(node);
+					}
+				}
+				for(int node = buckets.firstLive(); node != -1; node = buckets.nextLive(node)){
+					Entry<?, ?> entry2 = (Entry<?, ?>)buckets.get(node);
+					differences.add(new Difference(difference, Difference.KEY, null, -1, entry2.getKey(), null, entry2.getValue()));
+				}
+				return differences;
+			}
+			
+			/**
+			 * Returns true if an enclosing difference is of the same pair of
+			 * (unwrapped) instances, ie a circular reference back to it.
+			 * 
+			 * @param difference
+			 * @return
+			 */
+			boolean isCircular(Difference difference) {
+				Object value1 = resolveInstance(difference.value1);
+				Object value2 = resolveInstance(difference.value2);
+				for(Difference ancestor = difference.parent; ancestor != null; ancestor = ancestor.parent){
+					if(resolveInstance(ancestor.value1) == value1 && resolveInstance(ancestor.value2) == value2){
+						return true;
+					}
+				}
+				return false;
+			}
+			
+			/**
+			 * Returns true for arrays, and Iterables compared in order.
+			 */
+			boolean isIndexed(Object value) {
+				return value.getClass().isArray() || (configuration.isOrderedIterables() && isOrdered(value));
+			}
+			
+			List<?> getIndexed(Object value) {
+				if(value.getClass().isArray()){
+					return asList(value);
+				}
+				return value instanceof List ? (List<?>)value : toList((Iterable<?>)value);
+			}
+			
+			/**
+			 * Snapshots of Iterables, Maps and arrays are diffed by their copy.
+			 */
+			Object getDiffValue(Object value) {
+				return value instanceof Snapshot && ((Snapshot)value).plan == null ? ((Snapshot)value).values[0] : value;
+			}
+			
+			String getPath(Difference difference) {
+				List<Difference> differences = new ArrayList<Difference>();
+				for(Difference d = difference; d.parent != null; d = d.parent){
+					differences.add(d);
+				}
+				StringBuilder path = new StringBuilder();
+				for(int i = differences.size() - 1; i >= 0; i--){
+					Difference d = differences.get(i);
+					if(d.kind == Difference.FIELD){
+						if(path.length() > 0){
+							path.append('.');
+						}
+						path.append(d.name);
+					}else if(d.kind == Difference.INDEX){
+						path.append('[').append(d.index).append(']');
+					}else{
+						path.append('[').append(getToString(d.key, isLEHAware(d.key))).append(']');
+					}
+				}
+				return path.toString();
+			}
+			
+		}
+		
 		public Map<String, Object> getIdentity(Object instance) {
 			if(instance == null){
 				return Collections.emptyMap();
 			}
-			Map<String, Object> identity = getValueByFieldName(instance, identityFields);
+			long start = metrics == null ? 0 : System.nanoTime();
+			FieldAccessor[] fields = getPlan(resolveClass(instance)).getIdentityFields(isLEHAware(instance));
+			Map<String, Object> identity = getValueByFieldName(instance, fields);
 			for(Entry<String, Object> entry : identity.entrySet()){
 				entry.setValue(LEH.getInstance(entry.getValue()));
 			}
+			if(metrics != null){
+				metrics.recordOperation(resolveClass(instance), LEHMetrics.Operation.IDENTITY, 
+						System.nanoTime() - start, fields.length, 1, 0, 0);
+			}
 			return identity;
 		}
 		
+		public IdentityKey getIdentityKey(Object instance) {
+			if(instance == null){
+				return new IdentityKey(this, NO_NAMES, NO_VALUES, 0);
+			}
+			long start = metrics == null ? 0 : System.nanoTime();
+			ClassPlan plan = getPlan(resolveClass(instance));
+			boolean isLEHAware = isLEHAware(instance);
+			FieldAccessor[] fields = plan.getIdentityFields(isLEHAware);
+			Object[] values = new Object[fields.length];
+			int hashCode = 0;
+			for(int i = 0; i < fields.length; i++){
+				values[i] = getValue(fields[i], instance);
+				hashCode = 31 * hashCode + getKeyHashCode(values[i]);
+			}
+			if(metrics != null){
+				metrics.recordOperation(resolveClass(instance), LEHMetrics.Operation.IDENTITY, 
+						System.nanoTime() - start, fields.length, 1, 0, 0);
+			}
+			return new IdentityKey(this, isLEHAware ? plan.identityNames : NO_NAMES, values, hashCode);
+		}
+		
+		/**
+		 * Hashes a value as isEqual compares it, and so as the values of
+		 * IdentityKeys and keys of LEHMap and LEHSet are compared: plain values
+		 * by their own hashCode, others logically.
+		 * 
+		 * @param value
+		 * @return
+		 */
+		int getKeyHashCode(Object value) {
+			if(value == null){
+				return 0;
+			}
+			if(IdentityKey.isPlain(value)){
+				return value.hashCode();
+			}
+			Evaluated evaluated = Evaluated.acquire();
+			try {
+				return getValueHashCode(value, evaluated);
+			} finally {
+				evaluated.release();
+			}
+		}
+		
+		/**
+		 * Report a completed top level operation to the configured metrics.
+		 * 
+		 * @param instance
+		 * @param operation
+		 * @param start
+		 *            System.nanoTime() when the operation started.
+		 * @param depth
+		 * @param evaluated
+		 */
+		void record(Object instance, LEHMetrics.Operation operation, long start, int depth, Evaluated evaluated) {
+			metrics.recordOperation(resolveClass(instance), operation, System.nanoTime() - start, 
+					evaluated.fieldsRead, depth, evaluated.visited, evaluated.cycles);
+		}
+		
 		/**
 		 * @see leh.util.LEHDelegate.isEqual(Object instance1, Object instance2)
 		 */
@@ -211,16 +811,23 @@ public class LEH {
 		 * @return
 		 */
 		boolean isEqual(Object instance1, Object instance2, boolean isLEHAware){
-			return areValuesEqual(instance1, instance2, equalsHashCodeFields, new ArrayList<Object>(), isLEHAware);
+			Evaluated evaluated = Evaluated.acquire();
+			long start = metrics == null ? 0 : System.nanoTime();
+			try {
+				return areValuesEqual(instance1, instance2, evaluated, isLEHAware);
+			} finally {
+				if(metrics != null){
+					record(instance1, LEHMetrics.Operation.EQUALS, start, evaluated.peakDepth, evaluated);
+				}
+				evaluated.release();
+			}
 		}
 		
-		boolean areValuesEqual(Object instance1, Object instance2,
-				Map<Class<?>, List<Field>> fields, List<Object> evaluated) {
-			return areValuesEqual(instance1, instance2, fields, evaluated, isLEHAware(instance1));
+		boolean areValuesEqual(Object instance1, Object instance2, Evaluated evaluated) {
+			return areValuesEqual(instance1, instance2, evaluated, isLEHAware(instance1));
 		}
 		
-		boolean areValuesEqual(Object instance1, Object instance2,
-				Map<Class<?>, List<Field>> fields, List<Object> evaluated, boolean isLEHAware) {
+		boolean areValuesEqual(Object instance1, Object instance2, Evaluated evaluated, boolean isLEHAware) {
 			if(instance1 == instance2){
 				return true;  
 			}
@@ -228,142 +835,931 @@ public class LEH {
 				return false;
 			}
 			if(instance1 instanceof Iterable<?> && instance2 instanceof Iterable<?>){
-				return getIterableEquals(instance1, instance2, fields, evaluated);
+				return getIterableEquals(instance1, instance2, evaluated);
 			}
 			if(instance1 instanceof Map && instance2 instanceof Map){ 
-				return getMapEquals(instance1, instance2, fields, evaluated);
+				return getMapEquals(instance1, instance2, evaluated);
+			}
+			if(instance1.getClass().isArray() && instance2.getClass().isArray()){
+				return getArrayEquals(instance1, instance2, evaluated);
 			}
 			if(isLEHAware){
-				if(isAlreadyEvaluated(instance1, evaluated)){
+				if(isKnownLogicalHashMismatch(instance1, instance2)){
+					return false;
+				}
+				if(instance1 instanceof Snapshot){
+					return ((Snapshot)instance1).isEqual(instance2, evaluated);
+				}
+				if(instance2 instanceof Snapshot){
+					return ((Snapshot)instance2).isEqual(instance1, evaluated);
+				}
+				if(!evaluated.add(instance1)){
+					evaluated.cycles++;
 					return instance1 == instance2 || 
-							getHashCode(instance1, isLEHAware(instance1)) == getHashCode(instance2, isLEHAware(instance2));
+							getCycleHashCode(instance1) == getCycleHashCode(instance2);
 				}
-				evaluated.add(instance1);
-				Class<?> class1 = resolveClass(instance1);
-				Class<?> class2 = resolveClass(instance2);
+				Object resolved1 = resolveInstance(instance1);
+				Object resolved2 = resolveInstance(instance2);
+				Class<?> class1 = resolved1 == null ? void.class : resolved1.getClass();
+				Class<?> class2 = resolved2 == null ? void.class : resolved2.getClass();
+				boolean equal = false;
 				if(class1 == class2){
-					for(Field f : getFields(fields, class1, isLEHAware)){
-						if(!areValuesEqual(getValue(f, instance1), 
-										   getValue(f, instance2), 
-										   fields, 
-										   evaluated)){
-							return false;
+					ClassPlan plan = getPlan(class1);
+					boolean memoize = plan.traversesReferences && resolved1 != null && resolved2 != null;
+					long memoized = memoize ? evaluated.getMemoized(resolved1, resolved2) : Evaluated.NOT_MEMOIZED;
+					if(memoized != Evaluated.NOT_MEMOIZED){
+						equal = memoized != 0;
+					}else{
+						int cycles = evaluated.cycles;
+						equal = areFieldsEqual(plan, resolved1, resolved2, evaluated);
+						if(memoize && evaluated.cycles == cycles){
+							// found without meeting a circular reference, so equally true wherever the pair recurs
+							evaluated.memoize(resolved1, resolved2, equal ? 1 : 0);
 						}
 					}
-					return true;
 				}
-				return false;
+				evaluated.remove(instance1);
+				return equal;
 			}else if(instance1.equals(instance2)){
 				return true;
 			}
 			return false;
 		}
+		
+		/**
+		 * Used in place of array equality, which is reference equality. Object
+		 * arrays are compared as Lists of their elements, primitive arrays of
+		 * the same type by their elements in order, as Arrays.equals compares
+		 * them.
+		 * 
+		 * @param array1
+		 * @param array2
+		 * @param evaluated
+		 * @return
+		 */
+		boolean getArrayEquals(Object array1, Object array2, Evaluated evaluated) {
+			if(array1 instanceof Object[] && array2 instanceof Object[]){
+				return getIterableEquals(Arrays.asList((Object[])array1), Arrays.asList((Object[])array2), evaluated);
+			}
+			if(array1.getClass() != array2.getClass()){
+				return false;
+			}
+			if(array1 instanceof byte[]){
+				return Arrays.equals((byte[])array1, (byte[])array2);
+			}else if(array1 instanceof int[]){
+				return Arrays.equals((int[])array1, (int[])array2);
+			}else if(array1 instanceof long[]){
+				return Arrays.equals((long[])array1, (long[])array2);
+			}else if(array1 instanceof double[]){
+				return Arrays.equals((double[])array1, (double[])array2);
+			}else if(array1 instanceof float[]){
+				return Arrays.equals((float[])array1, (float[])array2);
+			}else if(array1 instanceof char[]){
+				return Arrays.equals((char[])array1, (char[])array2);
+			}else if(array1 instanceof short[]){
+				return Arrays.equals((short[])array1, (short[])array2);
+			}
+			return Arrays.equals((boolean[])array1, (boolean[])array2);
+		}
+		
+		/**
+		 * Hash a primitive array consistently with getArrayEquals.
+		 * 
+		 * @param array
+		 * @return
+		 */
+		int getPrimitiveArrayHashCode(Object array) {
+			if(array instanceof byte[]){
+				return Arrays.hashCode((byte[])array);
+			}else if(array instanceof int[]){
+				return Arrays.hashCode((int[])array);
+			}else if(array instanceof long[]){
+				return Arrays.hashCode((long[])array);
+			}else if(array instanceof double[]){
+				return Arrays.hashCode((double[])array);
+			}else if(array instanceof float[]){
+				return Arrays.hashCode((float[])array);
+			}else if(array instanceof char[]){
+				return Arrays.hashCode((char[])array);
+			}else if(array instanceof short[]){
+				return Arrays.hashCode((short[])array);
+			}
+			return Arrays.hashCode((boolean[])array);
+		}
+		
+		/**
+		 * Returns a fixed size List view of an array, boxing the elements of
+		 * primitive arrays as they are read.
+		 * 
+		 * @param array
+		 * @return
+		 */
+		List<?> asList(Object array) {
+			if(array instanceof Object[]){
+				return Arrays.asList((Object[])array);
+			}
+			return new PrimitiveArrayList(array);
+		}
+		
+		/**
+		 * Returns true if both instances' logical hashcodes are available
+		 * without traversing them, and they differ, proving the instances
+		 * unequal without comparing their fields.
+		 * 
+		 * @see #getKnownLogicalHashCode(Object)
+		 * @param instance1
+		 * @param instance2
+		 * @return
+		 */
+		boolean isKnownLogicalHashMismatch(Object instance1, Object instance2) {
+			long hashCode1 = getKnownLogicalHashCode(instance1);
+			if(hashCode1 == UNKNOWN_HASH_CODE){
+				return false;
+			}
+			long hashCode2 = getKnownLogicalHashCode(instance2);
+			return hashCode2 != UNKNOWN_HASH_CODE && hashCode1 != hashCode2;
+		}
+		
+		/**
+		 * Returns the logical hashcode of a Snapshot of an LEHAware instance, or
+		 * the memoized hashcode of an @Immutable instance (or Wrapper of one),
+		 * otherwise UNKNOWN_HASH_CODE. Hashcodes that depend on where a circular
+		 * reference was entered are unknown, as equal instances may differ. Plans are not read to find out whether a
+		 * type is @Immutable: an instance whose plan is not yet cached cannot
+		 * have a memoized hashcode.
+		 * 
+		 * @param instance
+		 * @return
+		 */
+		long getKnownLogicalHashCode(Object instance) {
+			if(instance instanceof Snapshot){
+				Snapshot snapshot = (Snapshot)instance;
+				return snapshot.plan == null || snapshot.unreliableHashCode ? UNKNOWN_HASH_CODE : snapshot.hashCode;
+			}
+			if(memoizedHashCodes){
+				Object resolved = resolveInstance(instance);
+				ClassPlan plan = resolved == null ? null : ClassPlan.getCached(resolved.getClass());
+				Integer hashCode = plan != null && plan.immutable ? hashCodes.get(resolved) : null;
+				if(hashCode != null){
+					return hashCode.intValue();
+				}
+			}
+			return UNKNOWN_HASH_CODE;
+		}
+		
+		/**
+		 * Returns true if both values' hashcodes are available without
+		 * traversing them and comparable, and they differ, proving the values
+		 * unequal: Strings, enums and boxed primitives by their own hashCode, and
+		 * Snapshots and memoized @Immutable instances by their logical hashcode.
+		 * 
+		 * @param value1
+		 * @param value2
+		 * @return
+		 */
+		boolean isKnownHashMismatch(Object value1, Object value2) {
+			if(hasCheapHashCode(value1)){
+				return hasCheapHashCode(value2) && value1.hashCode() != value2.hashCode();
+			}
+			return isLEHAware(value1) && isLEHAware(value2) && isKnownLogicalHashMismatch(value1, value2);
+		}
+		
+		/**
+		 * Compares the equality fields of two unwrapped instances of the plan's
+		 * class, in the plan's comparison order so the first unequal field is
+		 * likely found early. Primitive fields are compared without boxing,
+		 * and fields whose declared type is another plain value type directly
+		 * by their equals implementation, rather than entering the generic
+		 * dispatch in areValuesEqual.
+		 * 
+		 * @see leh.util.ClassPlan#comparisonOrder
+		 * @param plan
+		 * @param instance1
+		 * @param instance2
+		 * @param evaluated
+		 * @return
+		 */
+		boolean areFieldsEqual(ClassPlan plan, Object instance1, Object instance2, Evaluated evaluated) {
+			FieldAccessor[] fields = plan.equalsFields;
+			for(int i : plan.comparisonOrder){
+				FieldAccessor f = fields[i];
+				evaluated.fieldsRead++;
+				if(f instanceof PrimitiveFieldAccessor ? !((PrimitiveFieldAccessor)f).isEqual(instance1, instance2) : 
+						!areFieldValuesEqual(f, f.get(instance1), f.get(instance2), evaluated)){
+					plan.recordMismatch(i);
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		boolean areFieldValuesEqual(FieldAccessor field, Object value1, Object value2, Evaluated evaluated) {
+			if(field.isValue){
+				return value1 == value2 || (value1 != null && value1.equals(value2));
+			}
+			return areValuesEqual(value1, value2, evaluated);
+		}
 
-		boolean isAlreadyEvaluated(Object instance1, List<Object> evaluated) {
-			for(Object o : evaluated){
-				if(instance1 == o){
-					return true;
+		/**
+		 * Returns the passed in instance's class if it is not a Wrapper. In the
+		 * event the argument is of a Wrapper type, the wrapped type is returned
+		 * instead until an instance not of type Wrapper is discovered.
+		 * 
+		 * @param instance
+		 * @return
+		 */
+		Class<?> resolveClass(Object instance) {
+			instance = resolveInstance(instance);
+			return instance == null ? void.class : instance.getClass();
+		}
+
+		/**
+		 * Unwraps the passed in instance's (if it is of type Wrapper) Wrappers
+		 * until an instance not of type Wrapper is discovered. 
+		 * 
+		 * @param instance
+		 * @return
+		 */
+		Object resolveInstance(Object instance) {
+			while(instance instanceof Wrapper){
+				instance = ((Wrapper)instance).getWrappedInstance();
+			}
+			return instance;
+		}
+
+		/**
+		 * Used in place of Map equality tests in map access. Map equality tests invoke equals, which may not
+		 * represent logical equality. 
+		 * 
+		 * Keys of the second map are bucketed by logical hash so each key of the first map is only
+		 * compared against keys sharing its hash, making maps compare in expected linear time. Keys
+		 * are paired at most once. A key that finds no partner in its bucket is only compared against
+		 * every unpaired key when hashes are unreliable: hashing it, or any key of the second map, met
+		 * a circular reference or a Wrapper of an instance not implementing LEHAware, so logically
+		 * equal keys may not hash alike. Otherwise the maps are unequal.
+		 * 
+		 * @see #isReliable(Evaluated)
+		 * 
+		 * @param instance1
+		 * @param instance2
+		 * @param evaluated
+		 * @return
+		 */
+		boolean getMapEquals(Object instance1, Object instance2, Evaluated evaluated) {
+			Map<?,?> map1 = (Map<?,?>)instance1;
+			Map<?,?> map2 = (Map<?,?>)instance2;
+			if(map1.size() != map2.size()){
+				return false;
+			}
+			if(map1.isEmpty()){
+				return true;
+			}
+			if(isParallel(map1.size())){
+				return getParallelBagEquals(map1.entrySet(), map2.entrySet(), true, evaluated);
+			}
+			Evaluated hashing = new Evaluated();
+			HashBuckets buckets = new HashBuckets(map2.size());
+			boolean reliable2 = true;
+			for(Entry<?, ?> o2 : map2.entrySet()){
+				buckets.add(getLogicalHashCode(o2.getKey(), hashing), o2);
+				reliable2 &= isReliable(hashing);
+			}
+			for(Entry<?, ?> o1 : map1.entrySet()){
+				Object key1 = o1.getKey();
+				int hashCode = getLogicalHashCode(key1, hashing);
+				int node = findEqual(key1, hashCode, buckets, true, !reliable2 || !isReliable(hashing), evaluated);
+				if(node == -1 || !areValuesEqual(o1.getValue(), ((Entry<?, ?>)buckets.get(node)).getValue(), evaluated)){
+					return false;
+				}
+				buckets.remove(node);
+			}
+			return true;
+		}
+		
+		/**
+		 * Find the node in buckets whose item (or key of an Entry item if
+		 * entries is true) is logically equal to the supplied value, trying
+		 * candidates sharing the value's hash. Only if exhaustive, as hashes
+		 * are unreliable, any other live node is then tried. Most other live
+		 * nodes are unequal, so those whose known hashcodes differ from the
+		 * value's are passed over without comparing them.
+		 * 
+		 * @see #isReliable(Evaluated)
+		 * @see #isKnownHashMismatch(Object, Object)
+		 * @param value
+		 * @param hashCode
+		 * @param buckets
+		 * @param entries
+		 * @param exhaustive
+		 *            true if the value, or any item, may not share the hash of
+		 *            a logically equal counterpart.
+		 * @param evaluated
+		 * @return the matching node, or -1 if none is equal.
+		 */
+		int findEqual(Object value, int hashCode, HashBuckets buckets, boolean entries, boolean exhaustive, Evaluated evaluated) {
+			for(int node = buckets.first(hashCode); node != -1; node = buckets.next(node)){
+				if(areValuesEqual(value, getItem(buckets, node, entries), evaluated)){
+					return node;
+				}
+			}
+			if(!exhaustive){
+				return -1;
+			}
+			for(int node = buckets.firstLive(); node != -1; node = buckets.nextLive(node)){
+				Object item = getItem(buckets, node, entries);
+				if(!isKnownHashMismatch(value, item) && areValuesEqual(value, item, evaluated)){
+					return node;
+				}
+			}
+			return -1;
+		}
+		
+		Object getItem(HashBuckets buckets, int node, boolean entries) {
+			Object item = buckets.get(node);
+			return entries ? ((Entry<?, ?>)item).getKey() : item;
+		}
+		
+		/**
+		 * Hash a value consistently with areValuesEqual, for use in bucketing
+		 * values before comparing them. The supplied scratch instance is cleared
+		 * so each value is hashed as though at the top level.
+		 * 
+		 * @param value
+		 * @param scratch
+		 * @return
+		 */
+		int getLogicalHashCode(Object value, Evaluated scratch) {
+			scratch.clear();
+			return getValueHashCode(value, scratch);
+		}
+		
+		/**
+		 * Returns true if the hashes computed with the supplied instance are
+		 * shared by every logically equal value. Hashes of values reaching a
+		 * circular reference depend on where the traversal entered the cycle,
+		 * and those of Wrappers of instances not implementing LEHAware differ
+		 * from the hashCode of the unwrapped counterparts they compare equal to.
+		 * 
+		 * @param evaluated
+		 * @return
+		 */
+		boolean isReliable(Evaluated evaluated) {
+			return evaluated.cycles == 0 && evaluated.unreliableHashes == 0;
+		}
+
+		/**
+		 * Used in place of Iterable equality tests in collections access. Iterable equality tests invoke equals, which may not
+		 * represent logical equality. 
+		 * 
+		 * Iterables are compared as unordered bags, unless the configuration compares Iterables in order and both
+		 * have a defined iteration order, when they are compared pairwise in order.
+		 * 
+		 * @see leh.util.LEHConfiguration#isOrderedIterables()
+		 * @param instance1
+		 * @param instance2
+		 * @param evaluated
+		 * @return
+		 */
+		boolean getIterableEquals(Object instance1, Object instance2, Evaluated evaluated) {
+			if((instance1 instanceof Collection && instance2 instanceof Collection && 
+					((Collection<?>)instance1).size() != ((Collection<?>)instance2).size()) ||
+				instance1 instanceof Map && instance2 instanceof Map && 
+					((Map<?,?>)instance1).size() != ((Map<?,?>)instance2).size()){
+				return false;
+			}
+			if(configuration.isOrderedIterables() && isOrdered(instance1) && isOrdered(instance2)){
+				return getOrderedEquals((Iterable<?>)instance1, (Iterable<?>)instance2, evaluated);
+			}
+			return getUnorderedEquals((Iterable<?>)instance1, (Iterable<?>)instance2, evaluated);
+		}
+		
+		/**
+		 * Compares Iterables as unordered bags: equal only if each element of one
+		 * is paired with a distinct logically equal element of the other, so
+		 * duplicates must occur equally often on both sides. Elements of the
+		 * second are bucketed by logical hash, so each element of the first is
+		 * only compared against candidates sharing its hash, giving expected
+		 * linear time. As in getMapEquals, an element finding no partner in its
+		 * bucket is compared against every unpaired element before giving up
+		 * only when hashes are unreliable.
+		 * 
+		 * @see #isReliable(Evaluated)
+		 * 
+		 * @param instance1
+		 * @param instance2
+		 * @param evaluated
+		 * @return
+		 */
+		boolean getUnorderedEquals(Iterable<?> instance1, Iterable<?> instance2, Evaluated evaluated) {
+			Collection<?> collection2 = instance2 instanceof Collection ? 
+					(Collection<?>)instance2 : toList(instance2);
+			if(isParallel(collection2.size())){
+				return getParallelBagEquals(instance1 instanceof Collection ? 
+						(Collection<?>)instance1 : toList(instance1), collection2, false, evaluated);
+			}
+			Evaluated hashing = new Evaluated();
+			HashBuckets buckets = new HashBuckets(collection2.size());
+			boolean reliable2 = true;
+			for(Object o2 : collection2){
+				buckets.add(getLogicalHashCode(o2, hashing), o2);
+				reliable2 &= isReliable(hashing);
+			}
+			for(Object o1 : instance1){
+				int hashCode = getLogicalHashCode(o1, hashing);
+				int node = findEqual(o1, hashCode, buckets, false, !reliable2 || !isReliable(hashing), evaluated);
+				if(node == -1){
+					return false;
+				}
+				buckets.remove(node);
+			}
+			return buckets.size() == 0;
+		}
+		
+		List<Object> toList(Iterable<?> iterable) {
+			List<Object> list = new ArrayList<Object>();
+			for(Object o : iterable){
+				list.add(o);
+			}
+			return list;
+		}
+		
+		/**
+		 * Compares Iterables pairwise in iteration order in a single pass,
+		 * returning at the first unequal pair. RandomAccess lists first compare
+		 * the known hashCodes of their leading elements, so lists differing near
+		 * the front are rejected before any deep comparison.
+		 * 
+		 * @param instance1
+		 * @param instance2
+		 * @param evaluated
+		 * @return
+		 */
+		boolean getOrderedEquals(Iterable<?> instance1, Iterable<?> instance2, Evaluated evaluated) {
+			if(instance1 instanceof RandomAccess && instance1 instanceof List && 
+					instance2 instanceof RandomAccess && instance2 instanceof List){
+				List<?> list1 = (List<?>)instance1;
+				List<?> list2 = (List<?>)instance2;
+				int size = list1.size();
+				if(size != list2.size()){
+					return false;
+				}
+				for(int i = 0, precheck = Math.min(size, HASH_PRECHECK_LENGTH); i < precheck; i++){
+					if(isKnownHashMismatch(list1.get(i), list2.get(i))){
+						return false;
+					}
+				}
+				if(isParallel(size)){
+					return getParallelOrderedEquals(list1, list2, evaluated);
+				}
+				for(int i = 0; i < size; i++){
+					if(!areValuesEqual(list1.get(i), list2.get(i), evaluated)){
+						return false;
+					}
+				}
+				return true;
+			}
+			Iterator<?> iterator1 = instance1.iterator();
+			Iterator<?> iterator2 = instance2.iterator();
+			while(iterator1.hasNext() && iterator2.hasNext()){
+				if(!areValuesEqual(iterator1.next(), iterator2.next(), evaluated)){
+					return false;
+				}
+			}
+			return !iterator1.hasNext() && !iterator2.hasNext();
+		}
+		
+		/**
+		 * Returns true if Iterables or Maps of the supplied size are to be
+		 * compared in parallel. Comparisons already running in a parallel task
+		 * are not split further, so tasks never wait on other tasks.
+		 * 
+		 * @see leh.util.LEHConfiguration#getParallelExecutor()
+		 * @param size
+		 * @return
+		 */
+		boolean isParallel(int size) {
+			return configuration.getParallelExecutor() != null && size >= configuration.getParallelThreshold() && 
+					IN_PARALLEL_TASK.get() == null;
+		}
+		
+		/**
+		 * Returns true if the value is a Collection, Map or Object array large
+		 * enough to be hashed in parallel.
+		 * 
+		 * @param value
+		 * @return
+		 */
+		boolean isParallel(Object value) {
+			if(configuration.getParallelExecutor() == null){
+				return false;
+			}
+			return (value instanceof Collection && isParallel(((Collection<?>)value).size())) || 
+					(value instanceof Map && isParallel(((Map<?, ?>)value).size())) || 
+					(value instanceof Object[] && isParallel(((Object[])value).length));
+		}
+		
+		/**
+		 * Split hashing the elements of a Collection or Object array, or entries
+		 * of a Map, into tasks. Element hashes are summed, so the sum of the tasks' hashCodes
+		 * is the value's hashCode as getValueHashCode computes it sequentially.
+		 * 
+		 * @param value
+		 * @param cancelled
+		 * @param evaluated
+		 * @return
+		 */
+		List<ParallelTask> getHashTasks(Object value, AtomicBoolean cancelled, Evaluated evaluated) {
+			boolean entries = value instanceof Map;
+			Object[] items = entries ? ((Map<?, ?>)value).entrySet().toArray() : 
+					value instanceof Object[] ? (Object[])value : ((Collection<?>)value).toArray();
+			List<ParallelTask> tasks = new ArrayList<ParallelTask>();
+			int chunk = getChunkSize(items.length);
+			for(int from = 0; from < items.length; from += chunk){
+				tasks.add(new HashTask(items, from, Math.min(items.length, from + chunk), entries, cancelled, evaluated));
+			}
+			return tasks;
+		}
+		
+		/**
+		 * Compares RandomAccess lists of the same size pairwise in parallel,
+		 * each task comparing a range of indexes.
+		 * 
+		 * @param list1
+		 * @param list2
+		 * @param evaluated
+		 * @return
+		 */
+		boolean getParallelOrderedEquals(final List<?> list1, final List<?> list2, Evaluated evaluated) {
+			final AtomicBoolean cancelled = new AtomicBoolean();
+			List<ParallelTask> tasks = new ArrayList<ParallelTask>();
+			int size = list1.size();
+			int chunk = getChunkSize(size);
+			for(int from = 0; from < size; from += chunk){
+				final int start = from;
+				final int end = Math.min(size, from + chunk);
+				tasks.add(new ParallelTask(cancelled, evaluated) {
+					boolean compute() {
+						for(int i = start; i < end && !cancelled.get(); i++){
+							if(!areValuesEqual(list1.get(i), list2.get(i), this.evaluated)){
+								return false;
+							}
+						}
+						return true;
+					}
+				});
+			}
+			return invokeAll(tasks, cancelled, evaluated);
+		}
+		
+		/**
+		 * Parallel counterpart of getUnorderedEquals and getMapEquals (when
+		 * entries is true, comparing Map entries by key then value). Logical
+		 * hashes of both sides are computed in parallel, then items are
+		 * partitioned by hash so each task pairs items sharing a hash within
+		 * its own partition. Items left unpaired in their partition are only
+		 * paired across partitions, on the calling thread, when hashes are
+		 * unreliable, as in findEqual. Otherwise the collections are unequal.
+		 * 
+		 * @param collection1
+		 * @param collection2
+		 * @param entries
+		 * @param evaluated
+		 * @return
+		 */
+		boolean getParallelBagEquals(Collection<?> collection1, Collection<?> collection2, final boolean entries, Evaluated evaluated) {
+			final Object[] items1 = collection1.toArray();
+			final Object[] items2 = collection2.toArray();
+			if(items1.length != items2.length){
+				return false;
+			}
+			final int[] hashes1 = new int[items1.length];
+			final int[] hashes2 = new int[items2.length];
+			final AtomicBoolean cancelled = new AtomicBoolean();
+			final AtomicBoolean unreliable = new AtomicBoolean();
+			int chunk = getChunkSize(items1.length);
+			List<ParallelTask> hashing = new ArrayList<ParallelTask>();
+			for(int from = 0; from < items1.length; from += chunk){
+				final int start = from;
+				final int end = Math.min(items1.length, from + chunk);
+				hashing.add(new ParallelTask(cancelled, evaluated) {
+					boolean compute() {
+						Evaluated scratch = new Evaluated();
+						boolean reliable = true;
+						for(int i = start; i < end; i++){
+							hashes1[i] = getLogicalHashCode(getItem(items1[i], entries), scratch);
+							reliable &= isReliable(scratch);
+							hashes2[i] = getLogicalHashCode(getItem(items2[i], entries), scratch);
+							reliable &= isReliable(scratch);
+						}
+						if(!reliable){
+							unreliable.set(true);
+						}
+						return true;
+					}
+				});
+			}
+			invokeAll(hashing, cancelled, evaluated);
+			final AtomicBoolean mismatched = new AtomicBoolean();
+			final int partitions = hashing.size();
+			final int[][] partitioned1 = partition(hashes1, partitions);
+			final int[][] partitioned2 = partition(hashes2, partitions);
+			final List<Object> unpaired1 = Collections.synchronizedList(new ArrayList<Object>());
+			final List<Object> unpaired2 = Collections.synchronizedList(new ArrayList<Object>());
+			List<ParallelTask> pairing = new ArrayList<ParallelTask>();
+			for(int p = 0; p < partitions; p++){
+				final int partition = p;
+				pairing.add(new ParallelTask(mismatched, evaluated) {
+					boolean compute() {
+						int[] indexes1 = partitioned1[partition];
+						int[] indexes2 = partitioned2[partition];
+						HashBuckets buckets = new HashBuckets(indexes2.length);
+						for(int i : indexes2){
+							buckets.add(hashes2[i], items2[i]);
+						}
+						for(int i = 0; i < indexes1.length && !mismatched.get(); i++){
+							Object item1 = items1[indexes1[i]];
+							int node = buckets.first(hashes1[indexes1[i]]);
+							while(node != -1 && !areValuesEqual(getItem(item1, entries), getItem(buckets, node, entries), this.evaluated)){
+								node = buckets.next(node);
+							}
+							if(node == -1){
+								unpaired1.add(item1);
+							}else if(entries && !areValuesEqual(((Entry<?, ?>)item1).getValue(), 
+									((Entry<?, ?>)buckets.get(node)).getValue(), this.evaluated)){
+								return false;
+							}else{
+								buckets.remove(node);
+							}
+						}
+						for(int node = buckets.firstLive(); node != -1; node = buckets.nextLive(node)){
+							unpaired2.add(buckets.get(node));
+						}
+						return true;
+					}
+				});
+			}
+			if(!invokeAll(pairing, mismatched, evaluated)){
+				return false;
+			}
+			if(!unreliable.get()){
+				return unpaired1.isEmpty();
+			}
+			HashBuckets buckets = new HashBuckets(unpaired2.size());
+			for(Object item2 : unpaired2){
+				buckets.add(0, item2);
+			}
+			for(Object item1 : unpaired1){
+				// every item shares bucket 0, so each is tried without an exhaustive scan
+				int node = findEqual(getItem(item1, entries), 0, buckets, entries, false, evaluated);
+				if(node == -1 || (entries && !areValuesEqual(((Entry<?, ?>)item1).getValue(), 
+						((Entry<?, ?>)buckets.get(node)).getValue(), evaluated))){
+					return false;
 				}
+				buckets.remove(node);
 			}
-			return false;
+			return true;
 		}
 		
-		Map<String, Object> getValueByFieldName(Object instance, Map<Class<?>, List<Field>> fields) {
-			return getValueByFieldName(instance,
-					getFields(fields, instance.getClass(), isLEHAware(instance)));
+		Object getItem(Object item, boolean entries) {
+			return entries ? ((Entry<?, ?>)item).getKey() : item;
 		}
-
+		
 		/**
-		 * Returns the passed in instance's class if it is not a Wrapper. In the
-		 * event the argument is of a Wrapper type, the wrapped type is returned
-		 * instead until an instance not of type Wrapper is discovered.
+		 * Group indexes of the supplied hashes into the supplied number of
+		 * partitions, equal hashes always sharing a partition.
 		 * 
-		 * @param instance
+		 * @param hashes
+		 * @param partitions
+		 * @return indexes by partition.
+		 */
+		int[][] partition(int[] hashes, int partitions) {
+			int[] counts = new int[partitions];
+			for(int hash : hashes){
+				counts[getPartition(hash, partitions)]++;
+			}
+			int[][] partitioned = new int[partitions][];
+			for(int p = 0; p < partitions; p++){
+				partitioned[p] = new int[counts[p]];
+				counts[p] = 0;
+			}
+			for(int i = 0; i < hashes.length; i++){
+				int p = getPartition(hashes[i], partitions);
+				partitioned[p][counts[p]++] = i;
+			}
+			return partitioned;
+		}
+		
+		int getPartition(int hash, int partitions) {
+			return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % partitions;
+		}
+		
+		/**
+		 * Elements per parallel task, splitting into a few tasks per processor
+		 * so uneven tasks balance out, but never into tasks too small to
+		 * outweigh their scheduling.
+		 * 
+		 * @param size
 		 * @return
 		 */
-		Class<?> resolveClass(Object instance) {
-			instance = resolveInstance(instance);
-			return instance == null ? void.class : instance.getClass();
+		int getChunkSize(int size) {
+			int tasks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * TASKS_PER_PROCESSOR, size / MIN_TASK_SIZE));
+			return (size + tasks - 1) / tasks;
 		}
-
+		
 		/**
-		 * Unwraps the passed in instance's (if it is of type Wrapper) Wrappers
-		 * until an instance not of type Wrapper is discovered. 
+		 * Runs the tasks on the configured executor, returning false as soon as
+		 * any task returns false, cancelling the others. Measurements of the
+		 * completed tasks are added to the supplied evaluated. The calling
+		 * thread runs the tasks no pool thread has started, so it only waits on
+		 * tasks already running and never on a busy or saturated executor, ie
+		 * when called from one of the executor's own threads.
 		 * 
-		 * @param instance
+		 * @param tasks
+		 * @param cancelled
+		 * @param evaluated
 		 * @return
 		 */
-		Object resolveInstance(Object instance) {
-			while(instance instanceof Wrapper){
-				instance = ((Wrapper)instance).getWrappedInstance();
-			}
-			return instance;
+		boolean invokeAll(List<ParallelTask> tasks, AtomicBoolean cancelled, Evaluated evaluated) {
+			return await(tasks, submit(tasks), cancelled, evaluated);
 		}
-
+		
 		/**
-		 * Used in place of Map equality tests in map access. Map equality tests invoke equals, which may not
-		 * represent logical equality. 
+		 * Submit the tasks to the configured executor, until it rejects one.
 		 * 
-		 * TODO: Make performant. Performance is lousy on large and mostly equal maps.
+		 * @param tasks
+		 * @return futures of the tasks submitted, in the same order, the rest
+		 *         are left to the calling thread.
+		 */
+		List<Future<Boolean>> submit(List<ParallelTask> tasks) {
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(tasks.size());
+			try {
+				for(ParallelTask task : tasks){
+					futures.add(configuration.getParallelExecutor().submit(task));
+				}
+				return futures;
+			} catch (RejectedExecutionException e) {
+				return futures;
+			} catch (RuntimeException e) {
+				for(Future<Boolean> future : futures){
+					future.cancel(false);
+				}
+				throw e;
+			}
+		}
+		
+		/**
+		 * Waits for submitted tasks, running those not yet started on the
+		 * calling thread, as invokeAll.
 		 * 
-		 * @param instance1
-		 * @param instance2
-		 * @param fields
+		 * @see #invokeAll(List, AtomicBoolean, Evaluated)
+		 * @param tasks
+		 * @param futures
+		 * @param cancelled
+		 * @param evaluated
 		 * @return
 		 */
-		boolean getMapEquals(Object instance1, Object instance2, Map<Class<?>, List<Field>> fields, List<Object> evaluated) {
-			if(((Map<?,?>)instance1).size() != ((Map<?,?>)instance2).size()){
-				return false;
+		boolean await(List<ParallelTask> tasks, List<Future<Boolean>> futures, AtomicBoolean cancelled, Evaluated evaluated) {
+			try {
+				for(int i = 0; i < tasks.size(); i++){
+					ParallelTask task = tasks.get(i);
+					Boolean result = task.claim() ? task.run() : futures.get(i).get();
+					if(!result.booleanValue()){
+						return false;
+					}
+					evaluated.fieldsRead += task.evaluated.fieldsRead;
+					evaluated.cycles += task.evaluated.cycles;
+					evaluated.unreliableHashes += task.evaluated.unreliableHashes;
+					evaluated.peakDepth = Math.max(evaluated.peakDepth, task.evaluated.peakDepth);
+					evaluated.visited += task.evaluated.visited;
+				}
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				if(e.getCause() instanceof RuntimeException){
+					throw (RuntimeException)e.getCause();
+				}else if(e.getCause() instanceof Error){
+					throw (Error)e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			} finally {
+				cancelled.set(true);
+				for(Future<Boolean> future : futures){
+					future.cancel(false);
+				}
 			}
-			for(Entry<?, ?> o1 : ((Map<?,?>)instance1).entrySet()){
-				boolean foundValue = false;
-				Object value1 = o1.getValue(), value2 = null;
-				for(Entry<?, ?> o2 : ((Map<?,?>)instance2).entrySet()){
-					if(areValuesEqual(o1.getKey(), o2.getKey(), fields, evaluated)){
-						foundValue = true;
-						value2 = o2.getValue();
-						break;
+		}
+		
+		/**
+		 * Part of a parallel comparison or hash, continuing the calling thread's
+		 * traversal on a copy of its path so circular references back to
+		 * instances on the path are still detected. Comparisons return false on
+		 * finding a mismatch, which cancels the other tasks, and stop early once
+		 * cancelled. Run once, by whichever of a pool thread or the calling
+		 * thread claims it first.
+		 */
+		abstract class ParallelTask implements Callable<Boolean> {
+			
+			final AtomicBoolean cancelled;
+			final Evaluated evaluated;
+			final AtomicBoolean claimed = new AtomicBoolean();
+			
+			ParallelTask(AtomicBoolean cancelled, Evaluated path) {
+				this.cancelled = cancelled;
+				this.evaluated = path.copy();
+			}
+			
+			/**
+			 * @return true if the caller is to run the task, false if it was
+			 *         already claimed.
+			 */
+			boolean claim() {
+				return claimed.compareAndSet(false, true);
+			}
+			
+			public Boolean call() throws Exception {
+				// null if already run by the calling thread, which does not read it
+				return claim() ? run() : null;
+			}
+			
+			Boolean run() {
+				if(cancelled.get()){
+					return Boolean.FALSE;
+				}
+				Boolean inParallelTask = IN_PARALLEL_TASK.get();
+				IN_PARALLEL_TASK.set(Boolean.TRUE);
+				try {
+					boolean result = compute();
+					if(!result){
+						cancelled.set(true);
 					}
+					return Boolean.valueOf(result);
+				} finally {
+					IN_PARALLEL_TASK.set(inParallelTask);
 				}
-				if(!foundValue || !isEqual(value1, value2)){
-					return false;
-				};
 			}
-			return true;
+			
+			abstract boolean compute();
+			
 		}
-
+		
 		/**
-		 * Used in place of Iterable equality tests in collections access. Iterable equality tests invoke equals, which may not
-		 * represent logical equality. 
-		 * 
-		 * TODO: Make performant. Performance is lousy on large and mostly equal collections.
-		 * 
-		 * @param instance1
-		 * @param instance2
-		 * @param fields
-		 * @return
+		 * Sums the hashCodes of a range of elements, or Map entries.
 		 */
-		boolean getIterableEquals(Object instance1, Object instance2, 
-				Map<Class<?>, List<Field>> fields, List<Object> evaluated) {
-			if((instance1 instanceof Collection && instance2 instanceof Collection && 
-					((Collection<?>)instance1).size() != ((Collection<?>)instance2).size()) ||
-				instance1 instanceof Map && instance2 instanceof Map && 
-					((Map<?,?>)instance1).size() != ((Map<?,?>)instance2).size()){
-				return false;
+		class HashTask extends ParallelTask {
+			
+			final Object[] items;
+			final int start;
+			final int end;
+			final boolean entries;
+			int hashCode;
+			
+			HashTask(Object[] items, int start, int end, boolean entries, AtomicBoolean cancelled, Evaluated path) {
+				super(cancelled, path);
+				this.items = items;
+				this.start = start;
+				this.end = end;
+				this.entries = entries;
 			}
-			for(Object o1 : (Iterable<?>)instance1){
-				boolean foundEqual = false;
-				for(Object o2 : (Iterable<?>)instance2){
-					if(areValuesEqual(o1, o2, fields, evaluated)){
-						foundEqual = true;
-						break;
+			
+			boolean compute() {
+				for(int i = start; i < end; i++){
+					if(entries){
+						Entry<?, ?> entry = (Entry<?, ?>)items[i];
+						hashCode += getValueHashCode(entry.getKey(), evaluated) + getValueHashCode(entry.getValue(), evaluated);
+					}else{
+						hashCode += getValueHashCode(items[i], evaluated);
 					}
 				}
-				if(!foundEqual){
-					return false;
-				};
+				return true;
 			}
-			return true;
+			
+		}
+		
+		/**
+		 * Returns true if the instance is an Iterable with a defined iteration
+		 * order.
+		 * 
+		 * @param instance
+		 * @return
+		 */
+		boolean isOrdered(Object instance) {
+			return instance instanceof List || instance instanceof LinkedHashSet || instance instanceof SortedSet;
+		}
+		
+		/**
+		 * Returns true for Strings (whose hashCode is cached), enums and boxed
+		 * primitives, which LEH compares by their own equals.
+		 * 
+		 * @param value
+		 * @return
+		 */
+		boolean hasCheapHashCode(Object value) {
+			return value instanceof String || value instanceof Enum || 
+					value instanceof Integer || value instanceof Long || value instanceof Double || 
+					value instanceof Float || value instanceof Short || value instanceof Byte || 
+					value instanceof Character || value instanceof Boolean;
 		}
 		
 		/**
@@ -374,7 +1770,7 @@ public class LEH {
 		 * @param evaluated
 		 * @return
 		 */
-		int getHashCode(Object instance, List<Object> evaluated){
+		int getHashCode(Object instance, Evaluated evaluated){
 			return getHashCode(instance, evaluated, isLEHAware(instance));
 		}
 		
@@ -388,50 +1784,197 @@ public class LEH {
 		 * @return
 		 */
 		int getHashCode(Object instance, boolean isLEHAware){
-			return getHashCode(instance, new ArrayList<Object>(), isLEHAware);
+			Evaluated evaluated = Evaluated.acquire();
+			long start = metrics == null ? 0 : System.nanoTime();
+			try {
+				return getHashCode(instance, evaluated, isLEHAware);
+			} finally {
+				if(metrics != null){
+					record(instance, LEHMetrics.Operation.HASH_CODE, start, evaluated.peakDepth, evaluated);
+				}
+				evaluated.release();
+			}
+		}
+		
+		/**
+		 * Hashes an instance met again on the path being compared, as though at
+		 * the top level, as the circular reference rule of areValuesEqual
+		 * requires. Part of the comparison, so not recorded as an operation of
+		 * its own.
+		 * 
+		 * @param instance
+		 * @return
+		 */
+		int getCycleHashCode(Object instance) {
+			Evaluated evaluated = Evaluated.acquire();
+			try {
+				return getHashCode(instance, evaluated, isLEHAware(instance));
+			} finally {
+				evaluated.release();
+			}
 		}
 		
 		/**
 		 * getHashCode without Recurring indefinitely in the case of circular references.
+		 * Only the path to the instance being hashed is tracked, so an instance
+		 * reached by more than one path hashes alike on each, as it compares in
+		 * areValuesEqual.
+		 * 
+		 * Hashcodes computed without meeting a circular reference do not depend
+		 * on the path, and are memoized for the rest of the traversal so a
+		 * subgraph reached by many paths is hashed once. Hashcodes of @Immutable
+		 * instances evaluated at the top level are memoized across traversals,
+		 * unless they met a circular reference or an unreliable hashcode.
+		 * 
 		 * @param instance
-		 * @param arrayList memory
+		 * @param evaluated
 		 * @return
 		 */
-		int getHashCode(Object instance, List<Object> evaluated, boolean isLEHAware) {
+		int getHashCode(Object instance, Evaluated evaluated, boolean isLEHAware) {
 			if(instance != null){
-				if(isAlreadyEvaluated(instance, evaluated)){
-					return resolveClass(instance).hashCode();
-				}
-				evaluated.add(instance);
 				if(isLEHAware){
-					instance = resolveInstance(instance);
-					Class<? extends Object> instanceClass = instance.getClass();
-					int hashCode = instanceClass.hashCode();
-					Map<String, Object> valuesByFieldName = getValueByFieldName(instance, getFields(equalsHashCodeFields, resolveClass(instance), isLEHAware));
-					for(Entry<String, Object> fieldNameAndValue : valuesByFieldName.entrySet()){
-						Object value = fieldNameAndValue.getValue();
-						int tempHashCode = 0;
-						if(value instanceof Iterable<?>){
-							for(Object o : (Iterable<?>)value){
-								tempHashCode = getHashCode(o, evaluated);
+					if(instance instanceof Snapshot){
+						if(((Snapshot)instance).unreliableHashCode){
+							evaluated.unreliableHashes++;
+						}
+						return ((Snapshot)instance).hashCode;
+					}
+					if(!evaluated.add(instance)){
+						evaluated.cycles++;
+						return resolveClass(instance).hashCode();
+					}
+					Object resolved = resolveInstance(instance);
+					if(!isLEHAware(resolved)){
+						evaluated.unreliableHashes++;
+					}
+					ClassPlan plan = getPlan(resolved.getClass());
+					boolean memoize = plan.immutable && evaluated.size() == 1;
+					Integer memoized = memoize ? hashCodes.get(resolved) : null;
+					long memoizedInTraversal = plan.traversesReferences ? 
+							evaluated.getMemoized(resolved, null) : Evaluated.NOT_MEMOIZED;
+					int hashCode;
+					if(memoized != null){
+						hashCode = memoized.intValue();
+					}else if(memoizedInTraversal != Evaluated.NOT_MEMOIZED){
+						hashCode = (int)memoizedInTraversal;
+					}else{
+						int cycles = evaluated.cycles;
+						hashCode = plan.typeHashCode;
+						AtomicBoolean cancelled = null;
+						List<ParallelTask> tasks = null;
+						List<Future<Boolean>> futures = null;
+						for(FieldAccessor field : plan.equalsFields){
+							evaluated.fieldsRead++;
+							if(field instanceof PrimitiveFieldAccessor){
+								hashCode += getFieldHashCode((PrimitiveFieldAccessor)field, resolved);
+								continue;
+							}
+							Object value = field.get(resolved);
+							if(!field.isValue && isParallel(value)){
+								// hashed on the executor while the remaining fields are hashed here
+								if(tasks == null){
+									cancelled = new AtomicBoolean();
+									tasks = new ArrayList<ParallelTask>();
+									futures = new ArrayList<Future<Boolean>>();
+								}
+								List<ParallelTask> fieldTasks = getHashTasks(value, cancelled, evaluated);
+								futures.addAll(submit(fieldTasks));
+								tasks.addAll(fieldTasks);
+								hashCode += field.nameHashCode;
+							}else{
+								hashCode += getFieldHashCode(field, value, evaluated);
 							}
-						}else if(value instanceof Map){
-							for(Entry<?,?> o : ((Map<?,?>)value).entrySet()){
-								tempHashCode = getHashCode(o.getKey(), evaluated) + getHashCode(o.getValue(), evaluated);
+						}
+						if(tasks != null){
+							await(tasks, futures, cancelled, evaluated);
+							for(ParallelTask task : tasks){
+								hashCode += 31 * ((HashTask)task).hashCode;
 							}
-						} else if(value != null){
-							tempHashCode = getHashCode(value, evaluated);
 						}
-						if(value != null){
-							hashCode += tempHashCode + fieldNameAndValue.getKey().hashCode();
+						if(memoize && isReliable(evaluated)){
+							hashCodes.put(resolved, hashCode);
+							memoizedHashCodes = true;
+						}
+						if(plan.traversesReferences && evaluated.cycles == cycles){
+							evaluated.memoize(resolved, null, hashCode);
 						}
 					}
+					evaluated.remove(instance);
 					return hashCode;
 				}
 			}
+			if(instance != null && instance.getClass().isArray()){
+				return getValueHashCode(instance, evaluated);
+			}
 			return instance == null ? 0 : instance.hashCode();
 		}
 		
+		/**
+		 * Contribution of a field's value to the logical hashCode of the
+		 * instance declaring it, 0 if the value is null.
+		 * 
+		 * @param field
+		 * @param value
+		 * @param evaluated
+		 * @return
+		 */
+		int getFieldHashCode(FieldAccessor field, Object value, Evaluated evaluated) {
+			if(value == null){
+				return 0;
+			}
+			return 31 * (field.isValue ? value.hashCode() : getValueHashCode(value, evaluated)) + field.nameHashCode;
+		}
+		
+		/**
+		 * Contribution of a primitive field's value in the (unwrapped) instance
+		 * declaring it, as getFieldHashCode computes it for the boxed value.
+		 * 
+		 * @param field
+		 * @param instance
+		 * @return
+		 */
+		int getFieldHashCode(PrimitiveFieldAccessor field, Object instance) {
+			return field.readable ? 31 * field.getHashCode(instance) + field.nameHashCode : 0;
+		}
+		
+		/**
+		 * Hash a field value, accumulating over the elements of Iterable and
+		 * entries of Map values independent of their order, as they are compared
+		 * in areValuesEqual.
+		 * 
+		 * @param value
+		 * @param evaluated
+		 * @return
+		 */
+		int getValueHashCode(Object value, Evaluated evaluated) {
+			int hashCode = 0;
+			if(isParallel(value)){
+				AtomicBoolean cancelled = new AtomicBoolean();
+				List<ParallelTask> tasks = getHashTasks(value, cancelled, evaluated);
+				invokeAll(tasks, cancelled, evaluated);
+				for(ParallelTask task : tasks){
+					hashCode += ((HashTask)task).hashCode;
+				}
+			}else if(value instanceof Iterable<?>){
+				for(Object o : (Iterable<?>)value){
+					hashCode += getValueHashCode(o, evaluated);
+				}
+			}else if(value instanceof Map){
+				for(Entry<?,?> o : ((Map<?,?>)value).entrySet()){
+					hashCode += getValueHashCode(o.getKey(), evaluated) + getValueHashCode(o.getValue(), evaluated);
+				}
+			}else if(value instanceof Object[]){
+				for(Object o : (Object[])value){
+					hashCode += getValueHashCode(o, evaluated);
+				}
+			}else if(value != null && value.getClass().isArray()){
+				hashCode = getPrimitiveArrayHashCode(value);
+			}else if(value != null){
+				hashCode = getHashCode(value, evaluated);
+			}
+			return hashCode;
+		}
+		
 		/**
 		 * Reflectively access fields and accumulate toString values as implemented
 		 * specifically, or implied by the presumption of the instance implementing
@@ -444,144 +1987,210 @@ public class LEH {
 		 * @return
 		 */
 		String getToString(Object instance, boolean isLEHAware){
-			return getToString(instance, isLEHAware, new ArrayList<Object>());
+			try {
+				return appendToString(instance, isLEHAware, new StringBuilder()).toString();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		
+		/**
+		 * Writes the toString value for the instance to the supplied Appendable,
+		 * tracking evaluated instances in a single traversal, and stopping early
+		 * at the limits set by the configuration.
+		 * 
+		 * @see leh.util.LEHConfiguration#getMaxToStringLength()
+		 * 
+		 * @param instance
+		 * @param isLEHAware
+		 * @param out
+		 * @return
+		 * @throws IOException
+		 */
+		<A extends Appendable> A appendToString(Object instance, boolean isLEHAware, A out) throws IOException {
+			Evaluated evaluated = Evaluated.acquire();
+			ToStringWriter writer = new ToStringWriter(out, configuration);
+			long start = metrics == null ? 0 : System.nanoTime();
+			try {
+				appendToString(instance, isLEHAware, writer, evaluated);
+			} catch (ToStringWriter.TruncatedException e) {
+				// maximum length reached, the truncation marker has been written
+			} finally {
+				if(metrics != null){
+					record(instance, LEHMetrics.Operation.TO_STRING, start, writer.getPeakDepth(), evaluated);
+				}
+				evaluated.release();
+			}
+			return out;
 		}
 
 		/**
-		 * Reflectively create logical toString implementation, but memorizes
+		 * Reflectively write logical toString implementation, but memorizes
 		 * evaluated instances to prevent circular references from recurring
 		 * indefinitely.
 		 * 
-		 * @param instance2
-		 * @param arrayList
-		 * @return
+		 * @param instance
+		 * @param out
+		 * @param evaluated
+		 * @throws IOException
 		 */
-		String getToString(Object instance, List<Object> evaluated) {
-			return getToString(instance, isLEHAware(instance), evaluated);
+		void appendToString(Object instance, ToStringWriter out, Evaluated evaluated) throws IOException {
+			appendToString(instance, isLEHAware(instance), out, evaluated);
 		}
 		
 		/**
-		 * Reflectively create logical toString implementation, but memorizes
+		 * Reflectively write logical toString implementation, but memorizes
 		 * evaluated instances to prevent circular references from recurring
-		 * indefinitely.
+		 * indefinitely. toString values of @Immutable instances evaluated at
+		 * the top level are memoized, unless toString is bounded.
 		 * 
-		 * @param instance2
-		 * @param arrayList
-		 * @return
+		 * @param instance
+		 * @param isLEHAware
+		 * @param out
+		 * @param evaluated
+		 * @throws IOException
 		 */
-		String getToString(Object instance, boolean isLEHAware, List<Object> evaluated) {
-			String toString;
-			if(isLEHAware && instance != null ){
-				if(isAlreadyEvaluated(instance, evaluated)){
-					toString = "parentReference#"+getHashCode(resolveInstance(instance), isLEHAware);
+		void appendToString(Object instance, boolean isLEHAware, ToStringWriter out, Evaluated evaluated) throws IOException {
+			if(instance instanceof Snapshot && ((Snapshot)instance).plan == null){
+				out.append(instance.toString());
+			}else if(isLEHAware && instance != null ){
+				if(!evaluated.add(instance)){
+					evaluated.cycles++;
+					out.append("parentReference#").append(String.valueOf(getCycleHashCode(resolveInstance(instance))));
 				}else{
-					evaluated.add(instance);
-					Class<?> instanceClass = resolveClass(instance);
-					Class<?> tempClass = instanceClass;
-					while(tempClass.isAnonymousClass()){
-						if(tempClass.getInterfaces() != null && tempClass.getInterfaces().length > 0){
-							tempClass = tempClass.getInterfaces()[0];
-						}else{
-							tempClass = tempClass.getSuperclass();
+					ClassPlan plan = getPlan(resolveClass(instance));
+					if(plan.immutable && evaluated.size() == 1 && !configuration.isToStringBounded()){
+						Object resolved = resolveInstance(instance);
+						String toString = toStrings.get(resolved);
+						if(toString == null){
+							StringBuilder builder = new StringBuilder();
+							appendToString(plan, instance, new ToStringWriter(builder, configuration), evaluated);
+							toString = builder.toString();
+							toStrings.put(resolved, toString);
 						}
+						out.append(toString);
+					}else{
+						appendToString(plan, instance, out, evaluated);
 					}
-					toString = tempClass.getSimpleName() + (tempClass == instanceClass ? "" : ("$1"))  + "=[";
-					String seperator = ", ";
-					List<Field> idFields = getFields(identityFields, instanceClass, isLEHAware);
-					String idsString = getToString("ids={", instance, seperator, idFields, "}", evaluated);
-					toString += idsString;
-					List<Field> equalsFields = getFields(equalsHashCodeFields, instanceClass, isLEHAware);
-					List<Field> fields = new ArrayList<Field>(equalsFields);
-					fields.removeAll(idFields);
-					if(fields.size() > 0){
-						if(idsString.length() > 0){
-							toString += seperator;
-						}
-						toString += getToString(instance, seperator, fields, evaluated);
+				}
+			}else if(instance != null && instance.getClass().isArray()){
+				appendValueString(instance, ", ", out, evaluated);
+			}else{
+				out.append(String.valueOf(instance)); 
+			}
+		}
+		
+		/**
+		 * Write the instance's fields per its plan, ie Type=[ids={...}, field=value],
+		 * or Type=[...] if nested deeper than the configured maximum depth.
+		 * 
+		 * @param plan
+		 * @param instance
+		 * @param out
+		 * @param evaluated
+		 * @throws IOException
+		 */
+		void appendToString(ClassPlan plan, Object instance, ToStringWriter out, Evaluated evaluated) throws IOException {
+			String seperator = ", ";
+			out.append(plan.displayName).append("=[");
+			if(out.enter()){
+				boolean hasIds = appendToString("ids={", instance, seperator, plan.identityFields, "}", out, evaluated);
+				if(plan.nonIdentityFields.length > 0){
+					if(hasIds){
+						out.append(seperator);
 					}
-					toString += "]";
+					appendToString(instance, seperator, plan.nonIdentityFields, out, evaluated);
 				}
+				out.exit();
 			}else{
-				toString = String.valueOf(instance); 
+				out.truncated();
 			}
-			return toString;
+			out.append("]");
 		}
 
 		/**
-		 * Reflect over the supplied fields and accumulate a string representing the
-		 * state found in the instance's values.
+		 * Reflect over the supplied fields and write name=value for each non
+		 * null value found in the instance, separated by the supplied
+		 * seperator.
 		 * 
 		 * @param instance
 		 * @param seperator
 		 * @param fields
-		 * @return
+		 * @param out
+		 * @param evaluated
+		 * @throws IOException
 		 */
-		String getToString(Object instance, String seperator, List<Field> fields, List<Object> evaluated) {
-			Iterator<Entry<String, String>> valueByFieldNameIterator = map(instance, fields, seperator, evaluated).entrySet().iterator();
-			String toString = "";
-			while(valueByFieldNameIterator.hasNext()){
-				Entry<String, String> valueByFieldName = valueByFieldNameIterator.next();
-				toString += valueByFieldName.getKey() + "=" + valueByFieldName.getValue();
-				if(valueByFieldNameIterator.hasNext()){
-					toString += seperator;
+		void appendToString(Object instance, String seperator, FieldAccessor[] fields, ToStringWriter out, Evaluated evaluated) throws IOException {
+			boolean first = true;
+			for(FieldAccessor field : fields){
+				evaluated.fieldsRead++;
+				Object value = getValue(field, instance);
+				if(value != null){
+					if(!first){
+						out.append(seperator);
+					}
+					first = false;
+					out.append(field.getName()).append('=');
+					appendValueString(value, seperator, out, evaluated);
 				}
 			}
-			return toString;
 		}
 		
 		/**
-		 * Used to style strings with a prepend/append value, only if the resulting
-		 * toString value is significant (ie > 0 chars). Values as discovered in
-		 * reflective access for supplied fields are seperated by the supplied
-		 * seperator.
+		 * Used to style output with a prepend/append value, only if any of the
+		 * supplied fields has a value in the instance (ie output is > 0 chars).
+		 * Values as discovered in reflective access for supplied fields are
+		 * seperated by the supplied seperator.
 		 * 
 		 * @param prepend
 		 * @param instance
 		 * @param seperator
 		 * @param fields
 		 * @param append
+		 * @param out
 		 * @param evaluated
-		 * @return
+		 * @return true if anything was written.
+		 * @throws IOException
 		 */
-		String getToString(String prepend, Object instance, String seperator, List<Field> fields, String append, List<Object> evaluated) {
-			String toString = getToString(instance, seperator, fields, evaluated);
-			return toString.length() > 0 ? prepend + toString + append : toString;
+		boolean appendToString(String prepend, Object instance, String seperator, FieldAccessor[] fields, String append, ToStringWriter out, Evaluated evaluated) throws IOException {
+			for(FieldAccessor field : fields){
+				if(getValue(field, instance) != null){
+					out.append(prepend);
+					appendToString(instance, seperator, fields, out, evaluated);
+					out.append(append);
+					return true;
+				}
+			}
+			return false;
 		}
 		
 		/**
 		 * Used to create expressive toString implementations styling differing
 		 * collection and value types with appropriate prepended/appended values.
 		 * 
-		 * @param instance
-		 * @param fields
+		 * @param value
 		 * @param seperator
+		 * @param out
 		 * @param evaluated
-		 * @return
+		 * @throws IOException
 		 */
 		@SuppressWarnings("unchecked")
-		Map<String, String> map(Object instance, List<Field> fields, String seperator, List<Object> evaluated) {
-			Map<String, String> map = fields.size() > 0 ? new LinkedHashMap<String, String>() : Collections.<String, String>emptyMap();
-			Map<String, Object> values = getValueByFieldName(instance, fields);
-			for(Entry<String, Object> fieldNameAndValue : values.entrySet()){
-				String fieldName = fieldNameAndValue.getKey();
-				Object value = fieldNameAndValue.getValue();
-				if(value != null){ 
-					if(value instanceof Iterable<?>){
-						if(value instanceof List<?> && ((List<?>)value).size() > 0){
-							map.put(fieldName, getToCollectionString("[", (List<?>)value, "]", seperator, evaluated));
-						}else if(value instanceof Set && ((Set<?>)value).size() > 0){
-							map.put(fieldName, getToCollectionString("#{", (Set<?>)value, "}", seperator, evaluated));
-						}else {
-							map.put(fieldName, getToCollectionString("(", (Iterable<?>)value, ")", seperator, evaluated));
-						}
-					}else if(value instanceof Map<?,?> && ((Map<?,?>) value).size() > 0){
-						map.put(fieldName, getToCollectionString("{", (Map<Object, Object>)value, "}", seperator, evaluated));
-					}else{
-						map.put(fieldName, getToString(value, evaluated));
-					}
+		void appendValueString(Object value, String seperator, ToStringWriter out, Evaluated evaluated) throws IOException {
+			if(value instanceof Iterable<?>){
+				if(value instanceof List<?> && ((List<?>)value).size() > 0){
+					appendCollectionString("[", (List<?>)value, "]", seperator, out, evaluated);
+				}else if(value instanceof Set && ((Set<?>)value).size() > 0){
+					appendCollectionString("#{", (Set<?>)value, "}", seperator, out, evaluated);
+				}else {
+					appendCollectionString("(", (Iterable<?>)value, ")", seperator, out, evaluated);
 				}
+			}else if(value instanceof Map<?,?> && ((Map<?,?>) value).size() > 0){
+				appendCollectionString("{", (Map<Object, Object>)value, "}", seperator, out, evaluated);
+			}else if(value != null && value.getClass().isArray()){
+				appendValueString(asList(value), seperator, out, evaluated);
+			}else{
+				appendToString(value, out, evaluated);
 			}
-			return map;
 		}
 
 		/**
@@ -592,11 +2201,12 @@ public class LEH {
 		 * @param value
 		 * @param append
 		 * @param seperator
+		 * @param out
 		 * @param evaluated
-		 * @return
+		 * @throws IOException
 		 */
-		String getToCollectionString(String prepend, Iterable<?> value, String append, String seperator, List<Object> evaluated) {
-			return iteratorToString(prepend, value, seperator, append, iterableToStringFunction, evaluated);
+		void appendCollectionString(String prepend, Iterable<?> value, String append, String seperator, ToStringWriter out, Evaluated evaluated) throws IOException {
+			appendIterator(prepend, value, seperator, append, iterableToStringFunction, out, evaluated);
 		}
 		
 		/**
@@ -607,42 +2217,44 @@ public class LEH {
 		 * @param valueMap
 		 * @param append
 		 * @param seperator
+		 * @param out
 		 * @param evaluated
-		 * @return
+		 * @throws IOException
 		 */
-		String getToCollectionString(String prepend, Map<Object, Object> valueMap, String append, String seperator, List<Object> evaluated) {
-			return iteratorToString(prepend, valueMap.entrySet(), seperator, append, mapToStringFunction, evaluated);
+		void appendCollectionString(String prepend, Map<Object, Object> valueMap, String append, String seperator, ToStringWriter out, Evaluated evaluated) throws IOException {
+			appendIterator(prepend, valueMap.entrySet(), seperator, append, mapToStringFunction, out, evaluated);
 		}
 		
 		/**
 		 * Used to create expressive toString implementations styling iterable types with
-		 * supplied prepended/appended values only if collection size > 0.
+		 * supplied prepended/appended values only if collection size > 0. Elements past 
+		 * the configured maximum are replaced by a single "...".
 		 * 
 		 * @param prepend
 		 * @param collection
 		 * @param seperator
 		 * @param append
 		 * @param function
+		 * @param out
 		 * @param evaluated
-		 * @return
+		 * @throws IOException
 		 */
-		String iteratorToString(String prepend, Iterable<?> collection, String seperator, String append, ToStringFunction function, List<Object> evaluated){
+		void appendIterator(String prepend, Iterable<?> collection, String seperator, String append, ToStringFunction function, ToStringWriter out, Evaluated evaluated) throws IOException {
 			Iterator<?> values = collection.iterator();
-			String toString = "";
 			if(values.hasNext()){
-				toString = prepend;
-				while(values.hasNext()){
-					String string = function.toString(values.next(), evaluated);
-					if(string != null){
-						toString += string;
-						if(values.hasNext()){
-							toString += seperator;
-						}
+				out.append(prepend);
+				for(int count = 0; values.hasNext(); count++){
+					if(out.isElementLimit(count)){
+						out.truncated();
+						break;
+					}
+					function.append(values.next(), out, evaluated);
+					if(values.hasNext()){
+						out.append(seperator);
 					}
 				}
-				toString += append;
+				out.append(append);
 			}
-			return toString;
 		}
 
 		/**
@@ -653,9 +2265,9 @@ public class LEH {
 		 * @param fields
 		 * @return
 		 */
-		Map<String, Object> getValueByFieldName(Object instance, List<Field> fields){
+		Map<String, Object> getValueByFieldName(Object instance, FieldAccessor[] fields){
 			Map<String, Object> valueByFieldName = new LinkedHashMap<String, Object>();
-			for(Field field : fields){
+			for(FieldAccessor field : fields){
 				Object value = getValue(field, instance);
 				valueByFieldName.put(field.getName(), value);
 			}
@@ -663,89 +2275,39 @@ public class LEH {
 		}
 
 		/**
-		 * Reflectively access a field and ensure it is not mutated.
+		 * Read a field through its cached accessor, unwrapping the instance first.
+		 * Snapshots answer with their captured value.
 		 * 
 		 * @param field
 		 * @param instance
 		 * @return
 		 */
-		Object getValue(Field field, Object instance) {
+		Object getValue(FieldAccessor field, Object instance) {
 			if(field == null || instance == null){
 				return null;
 			}
-			instance = resolveInstance(instance);
-			boolean wasAbleToSetAccessible = false;
-			boolean wasAccessible = false;
-			try {
-				try {
-					wasAccessible = field.isAccessible();
-					field.setAccessible(true);
-					wasAbleToSetAccessible = true;
-				} catch (Throwable e) {
-					return null;
-				}
-				return field.get(instance);
-			} catch (IllegalArgumentException e) {
-				e.printStackTrace();
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
-			} finally {
-				if(wasAbleToSetAccessible){
-					field.setAccessible(wasAccessible);
-				}
+			if(instance instanceof Snapshot){
+				return ((Snapshot)instance).getValue(field);
 			}
-			return null;
+			return field.get(resolveInstance(instance));
 		}
 		
 		/**
-		 * Returns cached list of fields for the class of the instance supplied in
-		 * the map supplied. If no cached fields are discovered in the map, then the
-		 * class is read and the list of appropriate fields is resolved before
-		 * returning the cached fields.
+		 * Returns the plan of equality/hashcode eligible fields and identity
+		 * fields for the class supplied, as shared by all instances. Lookups
+		 * are reported to the configured metrics.
 		 * 
-		 * @param map
+		 * @see leh.util.ClassPlan
 		 * @param instanceClass
-		 * @param isLEHAware
 		 * @return
 		 */
-		List<Field> getFields(Map<Class<?>, List<Field>> map, Class<?> instanceClass, boolean isLEHAware) {
-			List<Field> fields = map.get(instanceClass);
-			if(fields == null){
-				readFields(instanceClass, isLEHAware);
-				fields = getFields(map, instanceClass, isLEHAware);
-			}
-			return fields;
-		}
-		
-		/**
-		 * Evaluates an Entity class for equals/hashcode eligible fields and
-		 * identity fields and stores in cache within local singleton instances.
-		 * 
-		 * @param instanceClass
-		 * @param isLEHAware
-		 */
-		void readFields(Class<?> instanceClass, boolean isLEHAware) {
-			List<Field> equalsFields = new ArrayList<Field>();
-			List<Field> identityFields = new ArrayList<Field>();
-			Class<?> lClass = instanceClass;
-			while(lClass != null){
-				if(isLEHAware){
-					for(Field f : lClass.getDeclaredFields()){
-						if(!f.isSynthetic() && !Modifier.isStatic(f.getModifiers())){
-							Identity identity = f.getAnnotation(Identity.class);
-							if(!f.isAnnotationPresent(Transient.class) && (identity == null || identity.value())){
-								equalsFields.add(f);
-							}
-							if(identity != null){
-								identityFields.add(f);
-							}
-						}
-					}
-				}
-				lClass = lClass.getSuperclass();
+		ClassPlan getPlan(Class<?> instanceClass) {
+			if(metrics == null){
+				return ClassPlan.get(instanceClass);
 			}
-			this.equalsHashCodeFields.put(instanceClass, equalsFields);
-			this.identityFields.put(instanceClass, identityFields);
+			ClassPlan plan = ClassPlan.getCached(instanceClass);
+			metrics.recordPlanLookup(instanceClass, plan != null);
+			return plan != null ? plan : ClassPlan.get(instanceClass);
 		}
 		
 		/**
@@ -778,7 +2340,30 @@ public class LEH {
 	 * 
 	 */
 	private static interface ToStringFunction {
-		String toString(Object o, List<Object> evaluated);
+		void append(Object o, ToStringWriter out, Evaluated evaluated) throws IOException;
+	}
+	
+	/**
+	 * Fixed size List view of a primitive array, boxing elements as read.
+	 */
+	private static class PrimitiveArrayList extends AbstractList<Object> implements RandomAccess {
+		
+		final Object array;
+		
+		PrimitiveArrayList(Object array) {
+			this.array = array;
+		}
+		
+		@Override
+		public Object get(int index) {
+			return Array.get(array, index);
+		}
+		
+		@Override
+		public int size() {
+			return Array.getLength(array);
+		}
+		
 	}
 	
 }
@@ -0,0 +1,218 @@
+package leh.util;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Options adjusting how LEH evaluates equals, hashCode, and toString. Instances
+ * are immutable, each with method returns a modified copy. Supply one to
+ * LEH.getInstance(LEHConfiguration) to obtain a delegate honoring it.
+ *
+ * @see leh.util.LEH
+ */
+public final class LEHConfiguration {
+
+	/**
+	 * The configuration used by LEH.getInstance().
+	 */
+	public static final LEHConfiguration DEFAULT = new LEHConfiguration();
+
+	private boolean orderedIterables;
+	private int maxToStringDepth = Integer.MAX_VALUE;
+	private int maxToStringElements = Integer.MAX_VALUE;
+	private int maxToStringLength = Integer.MAX_VALUE;
+	private LEHMetrics metrics;
+	private ExecutorService parallelExecutor;
+	private int parallelThreshold = 10000;
+
+	private LEHConfiguration() {
+	}
+
+	private LEHConfiguration(LEHConfiguration configuration) {
+		this.orderedIterables = configuration.orderedIterables;
+		this.maxToStringDepth = configuration.maxToStringDepth;
+		this.maxToStringElements = configuration.maxToStringElements;
+		this.maxToStringLength = configuration.maxToStringLength;
+		this.metrics = configuration.metrics;
+		this.parallelExecutor = configuration.parallelExecutor;
+		this.parallelThreshold = configuration.parallelThreshold;
+	}
+
+	/**
+	 * Returns true if Iterables that both have a defined iteration order
+	 * (Lists, LinkedHashSets and SortedSets) are equal only when their elements
+	 * are equal pairwise in order, comparing in a single pass. When false all
+	 * Iterables are compared as unordered bags, so a List equals a HashSet
+	 * holding the same elements. Default is false: comparing in order is not
+	 * transitive across ordered and unordered Iterables, so is opt in.
+	 *
+	 * @return
+	 */
+	public boolean isOrderedIterables() {
+		return orderedIterables;
+	}
+
+	/**
+	 * @see #isOrderedIterables()
+	 * @param orderedIterables
+	 * @return a copy of this configuration with the supplied value.
+	 */
+	public LEHConfiguration withOrderedIterables(boolean orderedIterables) {
+		LEHConfiguration configuration = new LEHConfiguration(this);
+		configuration.orderedIterables = orderedIterables;
+		return configuration;
+	}
+
+	/**
+	 * Returns how deeply nested LEHAware instances are rendered by toString,
+	 * the top level instance being at depth 1. The fields of instances nested
+	 * deeper are replaced by "...", ie Food=[...]. Default is unlimited.
+	 *
+	 * @return
+	 */
+	public int getMaxToStringDepth() {
+		return maxToStringDepth;
+	}
+
+	/**
+	 * @see #getMaxToStringDepth()
+	 * @param maxToStringDepth
+	 * @return a copy of this configuration with the supplied value.
+	 */
+	public LEHConfiguration withMaxToStringDepth(int maxToStringDepth) {
+		LEHConfiguration configuration = new LEHConfiguration(this);
+		configuration.maxToStringDepth = checkLimit(maxToStringDepth);
+		return configuration;
+	}
+
+	/**
+	 * Returns how many elements of each Iterable or entries of each Map are
+	 * rendered by toString, remaining elements are replaced by "...", ie
+	 * [1, 2, ...]. Default is unlimited.
+	 *
+	 * @return
+	 */
+	public int getMaxToStringElements() {
+		return maxToStringElements;
+	}
+
+	/**
+	 * @see #getMaxToStringElements()
+	 * @param maxToStringElements
+	 * @return a copy of this configuration with the supplied value.
+	 */
+	public LEHConfiguration withMaxToStringElements(int maxToStringElements) {
+		LEHConfiguration configuration = new LEHConfiguration(this);
+		configuration.maxToStringElements = checkLimit(maxToStringElements);
+		return configuration;
+	}
+
+	/**
+	 * Returns how many characters of a toString value are rendered. Rendering
+	 * stops once reached, and "..." is appended. Default is unlimited.
+	 *
+	 * @return
+	 */
+	public int getMaxToStringLength() {
+		return maxToStringLength;
+	}
+
+	/**
+	 * @see #getMaxToStringLength()
+	 * @param maxToStringLength
+	 * @return a copy of this configuration with the supplied value.
+	 */
+	public LEHConfiguration withMaxToStringLength(int maxToStringLength) {
+		LEHConfiguration configuration = new LEHConfiguration(this);
+		configuration.maxToStringLength = checkLimit(maxToStringLength);
+		return configuration;
+	}
+
+	/**
+	 * Returns true if any toString limit is configured.
+	 *
+	 * @return
+	 */
+	public boolean isToStringBounded() {
+		return maxToStringDepth != Integer.MAX_VALUE || maxToStringElements != Integer.MAX_VALUE || 
+				maxToStringLength != Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the receiver of measurements of each operation, or null if
+	 * operations are not measured. Default is null.
+	 *
+	 * @see leh.util.LEHStatistics
+	 * @return
+	 */
+	public LEHMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @see #getMetrics()
+	 * @param metrics
+	 *            null to stop measuring.
+	 * @return a copy of this configuration with the supplied value.
+	 */
+	public LEHConfiguration withMetrics(LEHMetrics metrics) {
+		LEHConfiguration configuration = new LEHConfiguration(this);
+		configuration.metrics = metrics;
+		return configuration;
+	}
+
+	/**
+	 * Returns the executor comparing large Iterables and Maps in parallel, or
+	 * null if they are compared on the calling thread. Comparisons are split
+	 * into tasks, and the calling thread waits for them to complete, so the
+	 * executor should not be one whose threads call into LEH while waiting on
+	 * tasks submitted to it. Default is null.
+	 *
+	 * @see #getParallelThreshold()
+	 * @return
+	 */
+	public ExecutorService getParallelExecutor() {
+		return parallelExecutor;
+	}
+
+	/**
+	 * @see #getParallelExecutor()
+	 * @param parallelExecutor
+	 *            null to compare on the calling thread.
+	 * @return a copy of this configuration with the supplied value.
+	 */
+	public LEHConfiguration withParallelExecutor(ExecutorService parallelExecutor) {
+		LEHConfiguration configuration = new LEHConfiguration(this);
+		configuration.parallelExecutor = parallelExecutor;
+		return configuration;
+	}
+
+	/**
+	 * Returns the number of elements (or entries) an Iterable (or Map) must
+	 * hold to be compared in parallel, when a parallel executor is configured.
+	 * Default is 10000.
+	 *
+	 * @return
+	 */
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * @see #getParallelThreshold()
+	 * @param parallelThreshold
+	 * @return a copy of this configuration with the supplied value.
+	 */
+	public LEHConfiguration withParallelThreshold(int parallelThreshold) {
+		LEHConfiguration configuration = new LEHConfiguration(this);
+		configuration.parallelThreshold = checkLimit(parallelThreshold);
+		return configuration;
+	}
+
+	private static int checkLimit(int limit) {
+		if(limit < 1){
+			throw new IllegalArgumentException("limit must be positive: " + limit);
+		}
+		return limit;
+	}
+
+}
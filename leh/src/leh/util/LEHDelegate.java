@@ -1,5 +1,6 @@
 package leh.util;
 
+import java.io.IOException;
 import java.util.Map;
 
 public interface LEHDelegate {
@@ -16,6 +17,22 @@ public interface LEHDelegate {
 	 */
 	Wrapper getInstance(Object instance);
 	
+	/**
+	 * Returns a Wrapper implementing equals, hashCode, and toString logically for the
+	 * state of the supplied instance as of this call. Field values are captured once
+	 * (Iterable and Map values by copy) and the hashCode is computed once, so the
+	 * Wrapper remains stable as a key in hashed collections even if the instance is
+	 * later mutated. Instances referenced from captured values are not captured.
+	 * 
+	 * A snapshot is equal to, and hashes alike with, other snapshots or Wrappers of 
+	 * instances logically equal to the captured state.
+	 * 
+	 * @param instance
+	 * @see leh.util.LEHDelegate#getInstance(Object)
+	 * @return
+	 */
+	Wrapper getSnapshot(Object instance);
+	
 	/**
 	 * To return true either of the statements:<BR> 
 	 *     instance == instance2;<BR>
@@ -60,6 +77,53 @@ public interface LEHDelegate {
 	 */
 	Object getToString(Object instance);
 	
+	/**
+	 * Writes the value getToString(instance).toString() would return to the supplied 
+	 * Appendable in a single pass, without building intermediate Strings, ie to render 
+	 * an instance into an existing StringBuilder or Writer.
+	 * 
+	 * @param instance
+	 * @param appendable
+	 * @return the supplied appendable.
+	 * @throws IOException if thrown by the appendable.
+	 */
+	<A extends Appendable> A appendToString(Object instance, A appendable) throws IOException;
+	
+	/**
+	 * Returns the paths to the values that differ between the supplied instances, 
+	 * ie spouse.favoriteFoods[2].type, or nothing if they are equal per getEquals. 
+	 * Fields are named, elements of arrays (and of Lists when comparing Iterables in 
+	 * order) indexed, and entries of Maps 
+	 * keyed by the toString value of their key. The empty path denotes the instances 
+	 * themselves, ie when they are of differing classes.<BR><BR>
+	 * 
+	 * Paths are found lazily as the result is iterated: only values found unequal are 
+	 * descended into, so finding the first difference of two large, mostly equal 
+	 * graphs costs little more than comparing them. Unordered Iterables are reported 
+	 * as a whole, as their elements cannot be paired.
+	 * 
+	 * @param instance1
+	 * @param instance2
+	 * @return
+	 */
+	Iterable<String> getDiff(Object instance1, Object instance2);
+	
+	/**
+	 * As getDiff(instance1, instance2), stopping after maxDifferences paths, and 
+	 * reporting values nested deeper than maxDepth (the instances themselves being at 
+	 * depth 0) by the path at maxDepth rather than descending into them.
+	 * 
+	 * @see #getDiff(Object, Object)
+	 * @param instance1
+	 * @param instance2
+	 * @param maxDifferences
+	 *            positive.
+	 * @param maxDepth
+	 *            not negative.
+	 * @return
+	 */
+	Iterable<String> getDiff(Object instance1, Object instance2, int maxDifferences, int maxDepth);
+	
 	/**
 	 * Return an Map<String, Object> of identity values (Wrapped by LEH) as discovered for
 	 * @Identity annotated fields. 
@@ -69,4 +133,16 @@ public interface LEHDelegate {
 	 */
 	Map<String, Object> getIdentity(Object instance);
 	
+	/**
+	 * Return the values of @Identity annotated fields as an IdentityKey, equal
+	 * to the key of any instance with the same identity, for use as a key of
+	 * hashed collections. Cheaper than getIdentity, values are not wrapped
+	 * and field names are shared by the keys of a class.
+	 * 
+	 * @see leh.util.IdentityKey
+	 * @param instance
+	 * @return
+	 */
+	IdentityKey getIdentityKey(Object instance);
+	
 }
@@ -0,0 +1,156 @@
+package leh.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexes LEHAware instances by the values of their @Identity fields, so the
+ * sibling of an instance (the indexed instance sharing its identity) is found
+ * in constant time rather than by scanning, ie to merge incoming records
+ * against existing entities by key.
+ *
+ * At most one instance is indexed per identity. Identity values are read as
+ * instances are added, an instance whose identity fields change while indexed
+ * must be removed and added again. Not thread safe.
+ *
+ * <pre>
+ * LEHIndex&lt;Person&gt; people = new LEHIndex&lt;Person&gt;(existing);
+ * for(Person incoming : feed){
+ *     Person sibling = people.get(incoming);
+ *     ...
+ * }
+ * </pre>
+ *
+ * @see leh.annotations.Identity
+ * @see leh.util.LEHDelegate#getIdentityKey(Object)
+ * @param <T>
+ */
+public class LEHIndex<T> {
+
+	private final LEHDelegate leh;
+	private final Map<IdentityKey, T> instances;
+
+	public LEHIndex() {
+		this(LEH.getInstance());
+	}
+
+	/**
+	 * @param leh
+	 *            delegate reading the identities of instances.
+	 */
+	public LEHIndex(LEHDelegate leh) {
+		this.leh = leh;
+		this.instances = new HashMap<IdentityKey, T>();
+	}
+
+	/**
+	 * Builds an index of the supplied instances.
+	 *
+	 * @param instances
+	 */
+	public LEHIndex(Collection<? extends T> instances) {
+		this(LEH.getInstance(), instances);
+	}
+
+	/**
+	 * Builds an index of the supplied instances.
+	 *
+	 * @param leh
+	 *            delegate reading the identities of instances.
+	 * @param instances
+	 */
+	public LEHIndex(LEHDelegate leh, Collection<? extends T> instances) {
+		this.leh = leh;
+		this.instances = new HashMap<IdentityKey, T>(Math.max(16, (int)(instances.size() / 0.75f) + 1));
+		addAll(instances);
+	}
+
+	/**
+	 * Indexes the instance, replacing any instance already indexed with the
+	 * same identity.
+	 *
+	 * @param instance
+	 * @return the instance replaced, or null.
+	 * @throws IllegalArgumentException
+	 *             if the instance has no @Identity fields.
+	 */
+	public T add(T instance) {
+		return instances.put(getKey(instance), instance);
+	}
+
+	/**
+	 * Indexes each of the supplied instances, as add.
+	 *
+	 * @param instances
+	 */
+	public void addAll(Iterable<? extends T> instances) {
+		for(T instance : instances){
+			add(instance);
+		}
+	}
+
+	/**
+	 * Returns the indexed instance with the same identity as the supplied
+	 * instance, which may itself be indexed, or another instance (or Wrapper
+	 * or Snapshot of one) with the same identity fields.
+	 *
+	 * @param sibling
+	 * @return the indexed instance, or null.
+	 */
+	public T get(Object sibling) {
+		return instances.get(getKey(sibling));
+	}
+
+	/**
+	 * @param sibling
+	 * @return true if an instance with the same identity is indexed.
+	 */
+	public boolean contains(Object sibling) {
+		return instances.containsKey(getKey(sibling));
+	}
+
+	/**
+	 * Removes the indexed instance with the same identity as the supplied
+	 * instance.
+	 *
+	 * @param sibling
+	 * @return the instance removed, or null.
+	 */
+	public T remove(Object sibling) {
+		return instances.remove(getKey(sibling));
+	}
+
+	public int size() {
+		return instances.size();
+	}
+
+	/**
+	 * @return an unmodifiable view of the indexed instances.
+	 */
+	public Collection<T> values() {
+		return Collections.unmodifiableCollection(instances.values());
+	}
+
+	public void clear() {
+		instances.clear();
+	}
+
+	/**
+	 * Returns the key the instance is indexed by: the values of its @Identity
+	 * fields.
+	 *
+	 * @param instance
+	 * @return
+	 */
+	IdentityKey getKey(Object instance) {
+		IdentityKey key = leh.getIdentityKey(instance);
+		if(key.size() == 0){
+			throw new IllegalArgumentException("No @Identity fields to index " + 
+					(instance == null ? "null" : instance.getClass().getName()) + " by");
+		}
+		return key;
+	}
+
+}
@@ -0,0 +1,309 @@
+package leh.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Map keyed by LEHAware instances (or any other values) compared logically,
+ * as LEHDelegate.getEquals compares them, without wrapping each key through
+ * LEHDelegate.getInstance. Keys are held as supplied in an open addressed
+ * table beside their logical hashCodes, each computed once as the key is
+ * added, so a lookup evaluates logical equality only against keys with the
+ * same hashCode, and no Wrapper or entry is allocated per key.
+ *
+ * As with HashMap, keys must not change in ways affecting their logical
+ * equality while held. Entries returned by iterating entrySet are views of
+ * the table, valid until it is next modified. Permits null keys and values.
+ * Not thread safe.
+ *
+ * @see leh.util.LEHSet
+ * @param <K>
+ * @param <V>
+ */
+public class LEHMap<K, V> extends AbstractMap<K, V> {
+
+	private final LEHTable table;
+	private Set<K> keySet;
+	private Set<Map.Entry<K, V>> entrySet;
+
+	public LEHMap() {
+		this(LEH.getInstance(), 0);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            keys held without resizing.
+	 */
+	public LEHMap(int expectedSize) {
+		this(LEH.getInstance(), expectedSize);
+	}
+
+	/**
+	 * @param leh
+	 *            delegate comparing and hashing keys.
+	 */
+	public LEHMap(LEHDelegate leh) {
+		this(leh, 0);
+	}
+
+	/**
+	 * @param leh
+	 *            delegate comparing and hashing keys.
+	 * @param expectedSize
+	 *            keys held without resizing.
+	 */
+	public LEHMap(LEHDelegate leh, int expectedSize) {
+		this.table = new LEHTable(leh, expectedSize, true);
+	}
+
+	/**
+	 * Builds a map of the supplied entries.
+	 *
+	 * @param map
+	 */
+	public LEHMap(Map<? extends K, ? extends V> map) {
+		this(LEH.getInstance(), map.size());
+		putAll(map);
+	}
+
+	@Override
+	public int size() {
+		return table.size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return table.indexOf(key) >= 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int slot = table.indexOf(key);
+		return slot < 0 ? null : (V)table.values[slot];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		int slot = table.add(key);
+		if(slot < 0){
+			slot = -slot - 1;
+			V previous = (V)table.values[slot];
+			table.values[slot] = value;
+			return previous;
+		}
+		table.values[slot] = value;
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		int slot = table.indexOf(key);
+		if(slot < 0){
+			return null;
+		}
+		V previous = (V)table.values[slot];
+		table.removeAt(slot, null);
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		table.clear();
+	}
+
+	@Override
+	public Set<K> keySet() {
+		if(keySet == null){
+			keySet = new AbstractSet<K>() {
+
+				@Override
+				public int size() {
+					return table.size;
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					return containsKey(o);
+				}
+
+				@Override
+				public boolean remove(Object o) {
+					int slot = table.indexOf(o);
+					if(slot < 0){
+						return false;
+					}
+					table.removeAt(slot, null);
+					return true;
+				}
+
+				@Override
+				public void clear() {
+					table.clear();
+				}
+
+				@Override
+				public Iterator<K> iterator() {
+					final LEHTable.SlotIterator slots = table.iterator();
+					return new Iterator<K>() {
+
+						public boolean hasNext() {
+							return slots.hasNext();
+						}
+
+						@SuppressWarnings("unchecked")
+						public K next() {
+							return (K)table.getKey(slots.next());
+						}
+
+						public void remove() {
+							slots.remove();
+						}
+
+					};
+				}
+
+			};
+		}
+		return keySet;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if(entrySet == null){
+			entrySet = new AbstractSet<Map.Entry<K, V>>() {
+
+				@Override
+				public int size() {
+					return table.size;
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					return getSlot(o) >= 0;
+				}
+
+				@Override
+				public boolean remove(Object o) {
+					int slot = getSlot(o);
+					if(slot < 0){
+						return false;
+					}
+					table.removeAt(slot, null);
+					return true;
+				}
+
+				@Override
+				public void clear() {
+					table.clear();
+				}
+
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					final LEHTable.SlotIterator slots = table.iterator();
+					return new Iterator<Map.Entry<K, V>>() {
+
+						public boolean hasNext() {
+							return slots.hasNext();
+						}
+
+						public Map.Entry<K, V> next() {
+							return new Entry(slots.next());
+						}
+
+						public void remove() {
+							slots.remove();
+						}
+
+					};
+				}
+
+			};
+		}
+		return entrySet;
+	}
+
+	/**
+	 * Returns the sum, over entries, of the logical hashCode of the key XOR
+	 * the hashCode of the value.
+	 */
+	@Override
+	public int hashCode() {
+		return table.getHashCode();
+	}
+
+	/**
+	 * @param o
+	 * @return the slot of the supplied entry's key if held with an equal
+	 *         value, or -1.
+	 */
+	private int getSlot(Object o) {
+		if(!(o instanceof Map.Entry<?,?>)){
+			return -1;
+		}
+		Map.Entry<?,?> entry = (Map.Entry<?,?>)o;
+		int slot = table.indexOf(entry.getKey());
+		if(slot < 0){
+			return -1;
+		}
+		Object value = table.values[slot];
+		return value == null ? (entry.getValue() == null ? slot : -1) : (value.equals(entry.getValue()) ? slot : -1);
+	}
+
+	/**
+	 * View of the entry held at a slot.
+	 */
+	private class Entry implements Map.Entry<K, V> {
+
+		private final int slot;
+
+		Entry(int slot) {
+			this.slot = slot;
+		}
+
+		@SuppressWarnings("unchecked")
+		public K getKey() {
+			return (K)table.getKey(slot);
+		}
+
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return (V)table.values[slot];
+		}
+
+		public V setValue(V value) {
+			V previous = getValue();
+			table.values[slot] = value;
+			return previous;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Map.Entry<?,?>)){
+				return false;
+			}
+			Map.Entry<?,?> entry = (Map.Entry<?,?>)obj;
+			Object value = getValue();
+			return LEH.isKeyEqual(table.leh, getKey(), entry.getKey()) &&
+					(value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			Object value = getValue();
+			return table.hashes[slot] ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+
+	}
+
+}
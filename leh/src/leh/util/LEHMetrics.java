@@ -0,0 +1,50 @@
+package leh.util;
+
+/**
+ * Receives measurements of LEH operations, supplied to LEH through
+ * LEHConfiguration.withMetrics(LEHMetrics). Implementations are invoked on
+ * the evaluating thread once per top level operation, so must be thread safe
+ * and should return quickly. LEH evaluates without measuring when no
+ * implementation is configured.
+ * 
+ * @see leh.util.LEHStatistics for an implementation exposed through JMX.
+ */
+public interface LEHMetrics {
+
+	/**
+	 * The operations measured, as named on LEHDelegate.
+	 */
+	public enum Operation {EQUALS, HASH_CODE, TO_STRING, IDENTITY};
+
+	/**
+	 * Records one top level operation on an instance of the supplied type.
+	 * 
+	 * @param type
+	 *            class of the (unwrapped) instance evaluated, void.class for
+	 *            null.
+	 * @param operation
+	 * @param nanos
+	 *            elapsed time.
+	 * @param fieldsRead
+	 *            field values read across the traversal.
+	 * @param depth
+	 *            deepest nesting of LEHAware instances reached.
+	 * @param visited
+	 *            LEHAware instances entered across the traversal, counting an
+	 *            instance each time it is reached.
+	 * @param cycles
+	 *            circular references encountered.
+	 */
+	void recordOperation(Class<?> type, Operation operation, long nanos, int fieldsRead, int depth, int visited, int cycles);
+
+	/**
+	 * Records a lookup of a class's plan, the fields LEH evaluates, which is
+	 * read from the class on a miss.
+	 * 
+	 * @param type
+	 * @param hit
+	 *            true if the plan was already cached.
+	 */
+	void recordPlanLookup(Class<?> type, boolean hit);
+
+}
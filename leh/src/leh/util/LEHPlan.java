@@ -0,0 +1,72 @@
+package leh.util;
+
+/**
+ * Implemented by classes generated at compile time by
+ * leh.apt.LEHPlanProcessor for each concrete LEHAware class. A generated plan
+ * names the fields LEH evaluates for the class and their roles, so the
+ * annotations of every field need not be read at runtime. Fields are still
+ * read through pre-unlocked reflective accessors, as generated code cannot
+ * read the private fields entities typically declare.
+ *
+ * Generated plans are named after the binary name of the class they describe
+ * suffixed with SUFFIX, and live in the same package. LEH uses a generated
+ * plan when one is found whose fingerprint matches the class, and falls back
+ * to reflection otherwise.
+ *
+ * @see leh.util.LEHAware
+ */
+public interface LEHPlan {
+
+	/**
+	 * Suffix appended to a class's binary name to name its generated plan.
+	 */
+	String SUFFIX = "_LEHPlan";
+
+	/**
+	 * Role bit indicating the field participates in equals/hashCode.
+	 */
+	int EQUALS = 1;
+
+	/**
+	 * Role bit indicating the field is annotated with @Identity.
+	 */
+	int IDENTITY = 2;
+
+	/**
+	 * Returns the class declaring each described field, in the order the
+	 * fields are evaluated: declaration order of the class then each of its
+	 * superclasses.
+	 *
+	 * @return
+	 */
+	Class<?>[] getDeclaringClasses();
+
+	/**
+	 * Returns the name of each described field, index aligned with
+	 * getDeclaringClasses().
+	 *
+	 * @return
+	 */
+	String[] getNames();
+
+	/**
+	 * Returns the EQUALS and IDENTITY role bits of each described field, index
+	 * aligned with getDeclaringClasses().
+	 *
+	 * @return
+	 */
+	int[] getRoles();
+
+	/**
+	 * Returns the fingerprint of the fields of the class as the plan was
+	 * generated: starting from 1, h = 31 * h + name.hashCode() over the name
+	 * of every non-static, non-synthetic field of the class then each of its
+	 * superclasses, in declaration order, described or not. A class whose
+	 * fields were since added, removed, renamed or reordered no longer
+	 * matches, and its plan is not used.
+	 *
+	 * @return
+	 */
+	int getFingerprint();
+
+}
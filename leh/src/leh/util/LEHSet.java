@@ -0,0 +1,134 @@
+package leh.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * A Set of LEHAware instances (or any other values) compared logically, as
+ * LEHDelegate.getEquals compares them, without wrapping each through
+ * LEHDelegate.getInstance. Instances are held as supplied in an open
+ * addressed table beside their logical hashCodes, each computed once as the
+ * instance is added, so a lookup evaluates logical equality only against
+ * instances with the same hashCode, and no Wrapper or entry is allocated per
+ * instance.
+ *
+ * As with HashSet, instances must not change in ways affecting their logical
+ * equality while held. Permits null. Not thread safe.
+ *
+ * <pre>
+ * LEHSet&lt;Person&gt; seen = new LEHSet&lt;Person&gt;(expectedSize);
+ * for(Person incoming : feed){
+ *     if(seen.add(incoming)){
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @see leh.util.LEHMap
+ * @param <E>
+ */
+public class LEHSet<E> extends AbstractSet<E> {
+
+	private final LEHTable table;
+
+	public LEHSet() {
+		this(LEH.getInstance(), 0);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            instances held without resizing.
+	 */
+	public LEHSet(int expectedSize) {
+		this(LEH.getInstance(), expectedSize);
+	}
+
+	/**
+	 * @param leh
+	 *            delegate comparing and hashing instances.
+	 */
+	public LEHSet(LEHDelegate leh) {
+		this(leh, 0);
+	}
+
+	/**
+	 * @param leh
+	 *            delegate comparing and hashing instances.
+	 * @param expectedSize
+	 *            instances held without resizing.
+	 */
+	public LEHSet(LEHDelegate leh, int expectedSize) {
+		this.table = new LEHTable(leh, expectedSize, false);
+	}
+
+	/**
+	 * Builds a set of the supplied instances.
+	 *
+	 * @param instances
+	 */
+	public LEHSet(Collection<? extends E> instances) {
+		this(LEH.getInstance(), instances.size());
+		addAll(instances);
+	}
+
+	@Override
+	public int size() {
+		return table.size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return table.indexOf(o) >= 0;
+	}
+
+	@Override
+	public boolean add(E e) {
+		return table.add(e) >= 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int slot = table.indexOf(o);
+		if(slot < 0){
+			return false;
+		}
+		table.removeAt(slot, null);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		table.clear();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		final LEHTable.SlotIterator slots = table.iterator();
+		return new Iterator<E>() {
+
+			public boolean hasNext() {
+				return slots.hasNext();
+			}
+
+			@SuppressWarnings("unchecked")
+			public E next() {
+				return (E)table.getKey(slots.next());
+			}
+
+			public void remove() {
+				slots.remove();
+			}
+
+		};
+	}
+
+	/**
+	 * Returns the sum of the logical hashCodes of the instances held.
+	 */
+	@Override
+	public int hashCode() {
+		return table.getHashCode();
+	}
+
+}
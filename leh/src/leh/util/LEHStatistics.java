@@ -0,0 +1,253 @@
+package leh.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * LEHMetrics implementation accumulating, per class and operation, call
+ * counts, a latency histogram, fields read, the deepest traversal, the most
+ * instances entered by one traversal and circular references encountered,
+ * along with plan cache hits and misses per class. Thread safe, counters are
+ * updated without locking.
+ * 
+ * Classes recorded are referenced until reset().
+ * 
+ * <pre>
+ * LEHStatistics statistics = new LEHStatistics();
+ * statistics.register("orders");
+ * LEHDelegate leh = LEH.getInstance(LEHConfiguration.DEFAULT.withMetrics(statistics));
+ * </pre>
+ */
+public class LEHStatistics implements LEHMetrics, LEHStatisticsMBean {
+
+	/**
+	 * Latencies are counted in buckets by power of two, bucket i holding
+	 * latencies below 2^i nanoseconds and at least 2^(i-1).
+	 */
+	static final int BUCKETS = 64;
+
+	private static final LEHMetrics.Operation[] OPERATIONS = LEHMetrics.Operation.values();
+
+	private final ConcurrentHashMap<Class<?>, Counters[]> counters = new ConcurrentHashMap<Class<?>, Counters[]>();
+	private final ConcurrentHashMap<Class<?>, AtomicLong[]> planLookups = new ConcurrentHashMap<Class<?>, AtomicLong[]>();
+
+	public void recordOperation(Class<?> type, Operation operation, long nanos, int fieldsRead, int depth, int visited, int cycles) {
+		Counters[] byOperation = counters.get(type);
+		if(byOperation == null){
+			byOperation = new Counters[OPERATIONS.length];
+			for(int i = 0; i < byOperation.length; i++){
+				byOperation[i] = new Counters();
+			}
+			Counters[] existing = counters.putIfAbsent(type, byOperation);
+			byOperation = existing == null ? byOperation : existing;
+		}
+		byOperation[operation.ordinal()].record(nanos, fieldsRead, depth, visited, cycles);
+	}
+
+	public void recordPlanLookup(Class<?> type, boolean hit) {
+		AtomicLong[] lookups = planLookups.get(type);
+		if(lookups == null){
+			lookups = new AtomicLong[]{new AtomicLong(), new AtomicLong()};
+			AtomicLong[] existing = planLookups.putIfAbsent(type, lookups);
+			lookups = existing == null ? lookups : existing;
+		}
+		lookups[hit ? 0 : 1].incrementAndGet();
+	}
+
+	public long getCalls(Class<?> type, Operation operation) {
+		Counters counters = getCounters(type, operation);
+		return counters == null ? 0 : counters.calls.get();
+	}
+
+	public long getFieldsRead(Class<?> type, Operation operation) {
+		Counters counters = getCounters(type, operation);
+		return counters == null ? 0 : counters.fieldsRead.get();
+	}
+
+	public long getMaxDepth(Class<?> type, Operation operation) {
+		Counters counters = getCounters(type, operation);
+		return counters == null ? 0 : counters.maxDepth.get();
+	}
+
+	public long getMaxVisited(Class<?> type, Operation operation) {
+		Counters counters = getCounters(type, operation);
+		return counters == null ? 0 : counters.maxVisited.get();
+	}
+
+	public long getCycles(Class<?> type, Operation operation) {
+		Counters counters = getCounters(type, operation);
+		return counters == null ? 0 : counters.cycles.get();
+	}
+
+	public long getTotalNanos(Class<?> type, Operation operation) {
+		Counters counters = getCounters(type, operation);
+		return counters == null ? 0 : counters.nanos.get();
+	}
+
+	/**
+	 * Returns an upper bound of the latency below which the supplied fraction
+	 * of calls completed, ie 0.99 for the 99th percentile, accurate to the
+	 * enclosing power of two.
+	 * 
+	 * @param type
+	 * @param operation
+	 * @param fraction
+	 * @return nanoseconds, 0 if nothing was recorded.
+	 */
+	public long getLatencyPercentile(Class<?> type, Operation operation, double fraction) {
+		Counters counters = getCounters(type, operation);
+		return counters == null ? 0 : counters.percentile(fraction);
+	}
+
+	public long getPlanHits(Class<?> type) {
+		AtomicLong[] lookups = planLookups.get(type);
+		return lookups == null ? 0 : lookups[0].get();
+	}
+
+	public long getPlanMisses(Class<?> type) {
+		AtomicLong[] lookups = planLookups.get(type);
+		return lookups == null ? 0 : lookups[1].get();
+	}
+
+	public long getCalls() {
+		long calls = 0;
+		for(Counters[] byOperation : counters.values()){
+			for(Counters c : byOperation){
+				calls += c.calls.get();
+			}
+		}
+		return calls;
+	}
+
+	public long getPlanHits() {
+		return sumPlanLookups(0);
+	}
+
+	public long getPlanMisses() {
+		return sumPlanLookups(1);
+	}
+
+	public String[] getSummary() {
+		List<String> summary = new ArrayList<String>();
+		for(Entry<Class<?>, Counters[]> entry : counters.entrySet()){
+			for(Operation operation : OPERATIONS){
+				Counters c = entry.getValue()[operation.ordinal()];
+				long calls = c.calls.get();
+				if(calls > 0){
+					summary.add(entry.getKey().getName() + " " + operation + 
+							" calls=" + calls + 
+							" meanNanos=" + c.nanos.get() / calls + 
+							" p50Nanos<=" + c.percentile(0.5) + 
+							" p99Nanos<=" + c.percentile(0.99) + 
+							" fieldsRead=" + c.fieldsRead.get() + 
+							" maxDepth=" + c.maxDepth.get() + 
+							" maxVisited=" + c.maxVisited.get() + 
+							" cycles=" + c.cycles.get());
+				}
+			}
+		}
+		return summary.toArray(new String[summary.size()]);
+	}
+
+	public void reset() {
+		counters.clear();
+		planLookups.clear();
+	}
+
+	/**
+	 * Registers this instance with the platform MBeanServer as
+	 * leh:type=LEHStatistics,name=[name].
+	 * 
+	 * @param name
+	 * @return the name registered under.
+	 * @throws JMException
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = getObjectName(name);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * @see #register(String)
+	 * @param name
+	 * @throws JMException
+	 */
+	public void unregister(String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(name));
+	}
+
+	private ObjectName getObjectName(String name) throws JMException {
+		return new ObjectName("leh:type=LEHStatistics,name=" + ObjectName.quote(name));
+	}
+
+	private Counters getCounters(Class<?> type, Operation operation) {
+		Counters[] byOperation = counters.get(type);
+		return byOperation == null ? null : byOperation[operation.ordinal()];
+	}
+
+	private long sumPlanLookups(int index) {
+		long sum = 0;
+		for(AtomicLong[] lookups : planLookups.values()){
+			sum += lookups[index].get();
+		}
+		return sum;
+	}
+
+	/**
+	 * Measurements of one operation on one class.
+	 */
+	private static class Counters {
+
+		final AtomicLong calls = new AtomicLong();
+		final AtomicLong nanos = new AtomicLong();
+		final AtomicLong fieldsRead = new AtomicLong();
+		final AtomicLong maxDepth = new AtomicLong();
+		final AtomicLong maxVisited = new AtomicLong();
+		final AtomicLong cycles = new AtomicLong();
+		final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+
+		void record(long nanos, int fieldsRead, int depth, int visited, int cycles) {
+			calls.incrementAndGet();
+			this.nanos.addAndGet(nanos);
+			this.fieldsRead.addAndGet(fieldsRead);
+			max(maxDepth, depth);
+			max(maxVisited, visited);
+			this.cycles.addAndGet(cycles);
+			latencies.incrementAndGet(Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(Math.max(0, nanos))));
+		}
+
+		long percentile(double fraction) {
+			long total = 0;
+			for(int i = 0; i < BUCKETS; i++){
+				total += latencies.get(i);
+			}
+			long threshold = (long)Math.ceil(total * fraction);
+			long count = 0;
+			for(int i = 0; i < BUCKETS && total > 0; i++){
+				count += latencies.get(i);
+				if(count >= threshold){
+					return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+				}
+			}
+			return 0;
+		}
+
+		private static void max(AtomicLong max, long value) {
+			long current;
+			while((current = max.get()) < value && !max.compareAndSet(current, value)){
+				// retry against the value another thread set
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,30 @@
+package leh.util;
+
+/**
+ * JMX view of an LEHStatistics instance.
+ * 
+ * @see leh.util.LEHStatistics#register(String)
+ */
+public interface LEHStatisticsMBean {
+
+	/**
+	 * @return top level operations recorded, of every class.
+	 */
+	long getCalls();
+
+	long getPlanHits();
+
+	long getPlanMisses();
+
+	/**
+	 * @return a line per class and operation recorded, ie
+	 *         "leh.example.food.Food HASH_CODE calls=10 meanNanos=1200 p50Nanos<=1024 p99Nanos<=4096 fieldsRead=30 maxDepth=1 maxVisited=1 cycles=0"
+	 */
+	String[] getSummary();
+
+	/**
+	 * Discards everything recorded.
+	 */
+	void reset();
+
+}
@@ -0,0 +1,320 @@
+package leh.util;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * Open addressed hash table of logically compared keys, backing LEHMap and
+ * LEHSet. Keys are stored as supplied beside their logical hashCodes, computed
+ * once as they are added, in flat arrays probed linearly. Lookups compare the
+ * cached hashCodes before evaluating equality, and nothing is allocated per
+ * key. Removals shift back keys probed past the freed slot, so no tombstones
+ * accumulate.
+ */
+class LEHTable {
+
+	/**
+	 * Stored in place of the null key, as null marks empty slots.
+	 */
+	static final Object NULL_KEY = new Object();
+
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	final LEHDelegate leh;
+	private final boolean hasValues;
+
+	Object[] keys;
+	int[] hashes;
+
+	/**
+	 * Values by slot, or null if the table holds only keys.
+	 */
+	Object[] values;
+
+	int size;
+	int modCount;
+	private int threshold;
+
+	/**
+	 * @param leh
+	 *            delegate comparing and hashing keys.
+	 * @param expectedSize
+	 *            keys held without resizing.
+	 * @param hasValues
+	 *            true to hold a value per key.
+	 */
+	LEHTable(LEHDelegate leh, int expectedSize, boolean hasValues) {
+		if(expectedSize < 0){
+			throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+		}
+		this.leh = leh;
+		this.hasValues = hasValues;
+		allocate(getCapacity(expectedSize));
+	}
+
+	/**
+	 * @param key
+	 * @return the slot holding a key logically equal to the supplied key, or -1.
+	 */
+	int indexOf(Object key) {
+		int hash = hash(key);
+		int mask = keys.length - 1;
+		for(int i = spread(hash) & mask; keys[i] != null; i = (i + 1) & mask){
+			if(hashes[i] == hash && isEqual(key, keys[i])){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the key unless a logically equal key is held.
+	 *
+	 * @param key
+	 * @return the slot the key was added at, or if an equal key is held,
+	 *         (-(slot holding it) - 1).
+	 */
+	int add(Object key) {
+		int hash = hash(key);
+		int mask = keys.length - 1;
+		int i = spread(hash) & mask;
+		for(; keys[i] != null; i = (i + 1) & mask){
+			if(hashes[i] == hash && isEqual(key, keys[i])){
+				return -i - 1;
+			}
+		}
+		if(size >= threshold){
+			grow();
+			mask = keys.length - 1;
+			i = spread(hash) & mask;
+			while(keys[i] != null){
+				i = (i + 1) & mask;
+			}
+		}
+		keys[i] = key == null ? NULL_KEY : key;
+		hashes[i] = hash;
+		size++;
+		modCount++;
+		return i;
+	}
+
+	/**
+	 * @param slot
+	 * @return the key held at slot.
+	 */
+	Object getKey(int slot) {
+		Object key = keys[slot];
+		return key == NULL_KEY ? null : key;
+	}
+
+	/**
+	 * Removes the key (and value) at slot, shifting back keys probed past it
+	 * so lookups still reach them.
+	 *
+	 * @param slot
+	 * @param iterator
+	 *            the iterator removing the key, told of keys shifted into
+	 *            slots it has walked, or null.
+	 */
+	void removeAt(int slot, SlotIterator iterator) {
+		int mask = keys.length - 1;
+		int i = slot;
+		for(int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask){
+			int home = spread(hashes[j]) & mask;
+			if(i <= j ? (home <= i || home > j) : (home <= i && home > j)){
+				if(iterator != null && j < slot && i >= slot){
+					iterator.displaced(keys[j], hashes[j]);
+				}
+				keys[i] = keys[j];
+				hashes[i] = hashes[j];
+				if(hasValues){
+					values[i] = values[j];
+				}
+				i = j;
+			}
+		}
+		keys[i] = null;
+		if(hasValues){
+			values[i] = null;
+		}
+		size--;
+		modCount++;
+	}
+
+	void clear() {
+		Arrays.fill(keys, null);
+		if(hasValues){
+			Arrays.fill(values, null);
+		}
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns the sum of the hashCodes of the keys, and values when held, as
+	 * the hashCode of a Set or Map holding them, but from the logical
+	 * hashCodes of the keys.
+	 *
+	 * @return
+	 */
+	int getHashCode() {
+		int hashCode = 0;
+		for(int i = 0; i < keys.length; i++){
+			if(keys[i] != null){
+				hashCode += hasValues ? hashes[i] ^ (values[i] == null ? 0 : values[i].hashCode()) : hashes[i];
+			}
+		}
+		return hashCode;
+	}
+
+	SlotIterator iterator() {
+		return new SlotIterator();
+	}
+
+	private int hash(Object key) {
+		return key == null ? 0 : LEH.getKeyHashCode(leh, key);
+	}
+
+	private boolean isEqual(Object key, Object held) {
+		if(key == null){
+			return held == NULL_KEY;
+		}
+		return key == held || (held != NULL_KEY && LEH.isKeyEqual(leh, key, held));
+	}
+
+	/**
+	 * @param key
+	 * @param hash
+	 * @return the slot holding the very key supplied, which must be held.
+	 */
+	private int slotOf(Object key, int hash) {
+		int mask = keys.length - 1;
+		int i = spread(hash) & mask;
+		while(keys[i] != key){
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		hashes = new int[capacity];
+		values = hasValues ? new Object[capacity] : null;
+		threshold = capacity == MAX_CAPACITY ? capacity - 1 : capacity / 4 * 3;
+	}
+
+	private void grow() {
+		if(keys.length == MAX_CAPACITY){
+			throw new IllegalStateException("capacity exceeded: " + size);
+		}
+		Object[] oldKeys = keys;
+		int[] oldHashes = hashes;
+		Object[] oldValues = values;
+		allocate(keys.length * 2);
+		int mask = keys.length - 1;
+		for(int j = 0; j < oldKeys.length; j++){
+			if(oldKeys[j] != null){
+				int i = spread(oldHashes[j]) & mask;
+				while(keys[i] != null){
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				hashes[i] = oldHashes[j];
+				if(hasValues){
+					values[i] = oldValues[j];
+				}
+			}
+		}
+	}
+
+	private static int getCapacity(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while(capacity < MAX_CAPACITY && capacity / 4 * 3 < expectedSize){
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Walks the occupied slots from last to first. Removing through remove()
+	 * may shift a key not yet walked, that had wrapped around to the start of
+	 * the table, into a slot already walked; such keys are walked last.
+	 */
+	class SlotIterator {
+
+		private int position = keys.length;
+		private int remaining = size;
+		private int slot = -1;
+		private boolean walking = true;
+		private int expectedModCount = modCount;
+		private Object[] displacedKeys;
+		private int[] displacedHashes;
+		private int displacedCount;
+
+		boolean hasNext() {
+			return remaining > 0;
+		}
+
+		/**
+		 * @return the next occupied slot.
+		 */
+		int next() {
+			checkModCount();
+			if(remaining == 0){
+				throw new NoSuchElementException();
+			}
+			remaining--;
+			while(position > 0){
+				if(keys[--position] != null){
+					return slot = position;
+				}
+			}
+			walking = false;
+			displacedCount--;
+			return slot = slotOf(displacedKeys[displacedCount], displacedHashes[displacedCount]);
+		}
+
+		/**
+		 * Removes the key at the slot last returned by next().
+		 */
+		void remove() {
+			if(slot < 0){
+				throw new IllegalStateException();
+			}
+			checkModCount();
+			removeAt(slot, walking ? this : null);
+			expectedModCount = modCount;
+			slot = -1;
+		}
+
+		private void displaced(Object key, int hash) {
+			if(displacedKeys == null){
+				displacedKeys = new Object[4];
+				displacedHashes = new int[4];
+			}else if(displacedCount == displacedKeys.length){
+				Object[] grownKeys = new Object[displacedCount * 2];
+				int[] grownHashes = new int[displacedCount * 2];
+				System.arraycopy(displacedKeys, 0, grownKeys, 0, displacedCount);
+				System.arraycopy(displacedHashes, 0, grownHashes, 0, displacedCount);
+				displacedKeys = grownKeys;
+				displacedHashes = grownHashes;
+			}
+			displacedKeys[displacedCount] = key;
+			displacedHashes[displacedCount++] = hash;
+		}
+
+		private void checkModCount() {
+			if(modCount != expectedModCount){
+				throw new ConcurrentModificationException();
+			}
+		}
+
+	}
+
+}
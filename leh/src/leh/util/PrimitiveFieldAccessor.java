@@ -0,0 +1,100 @@
+package leh.util;
+
+import java.lang.reflect.Field;
+
+/**
+ * A field of primitive type, compared and hashed through the primitive reads
+ * of Field (getInt, getLong...) so equals and hashCode evaluations of
+ * scalar fields do not box their values. Results agree with the boxed values'
+ * equals and hashCode, ie doubles and floats compare by their bits as
+ * Double.equals and Float.equals do.
+ *
+ * Reads through get(Object) still box, as toString and Snapshots require.
+ */
+class PrimitiveFieldAccessor extends FieldAccessor {
+
+	final Class<?> type;
+
+	PrimitiveFieldAccessor(Field field) {
+		super(field);
+		this.type = field.getType();
+	}
+
+	/**
+	 * Compares the field's values in two instances of its declaring class.
+	 * Unreadable fields are equal, as their values read as null.
+	 *
+	 * @param instance1
+	 * @param instance2
+	 * @return
+	 */
+	boolean isEqual(Object instance1, Object instance2) {
+		if(!readable){
+			return true;
+		}
+		try {
+			if(type == int.class){
+				return field.getInt(instance1) == field.getInt(instance2);
+			}else if(type == long.class){
+				return field.getLong(instance1) == field.getLong(instance2);
+			}else if(type == boolean.class){
+				return field.getBoolean(instance1) == field.getBoolean(instance2);
+			}else if(type == double.class){
+				return Double.doubleToLongBits(field.getDouble(instance1)) == Double.doubleToLongBits(field.getDouble(instance2));
+			}else if(type == float.class){
+				return Float.floatToIntBits(field.getFloat(instance1)) == Float.floatToIntBits(field.getFloat(instance2));
+			}else if(type == char.class){
+				return field.getChar(instance1) == field.getChar(instance2);
+			}else if(type == short.class){
+				return field.getShort(instance1) == field.getShort(instance2);
+			}
+			return field.getByte(instance1) == field.getByte(instance2);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hashCode of the field's boxed value in the instance,
+	 * without boxing it.
+	 *
+	 * @param instance
+	 * @return
+	 */
+	int getHashCode(Object instance) {
+		if(!readable){
+			return 0;
+		}
+		try {
+			if(type == int.class){
+				return field.getInt(instance);
+			}else if(type == long.class){
+				return hash(field.getLong(instance));
+			}else if(type == boolean.class){
+				return field.getBoolean(instance) ? 1231 : 1237;
+			}else if(type == double.class){
+				return hash(Double.doubleToLongBits(field.getDouble(instance)));
+			}else if(type == float.class){
+				return Float.floatToIntBits(field.getFloat(instance));
+			}else if(type == char.class){
+				return field.getChar(instance);
+			}else if(type == short.class){
+				return field.getShort(instance);
+			}
+			return field.getByte(instance);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+		}
+		return 0;
+	}
+
+	private static int hash(long value) {
+		return (int)(value ^ (value >>> 32));
+	}
+
+}
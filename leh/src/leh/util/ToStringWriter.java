@@ -0,0 +1,121 @@
+package leh.util;
+
+import java.io.IOException;
+
+/**
+ * Appendable receiving a single toString rendering, enforcing the limits of
+ * an LEHConfiguration as output is written rather than by cutting a complete
+ * rendering afterwards. Nesting depth is tracked by the renderer through
+ * enter() and exit(), elements per collection through isElementLimit(int).
+ * Once the maximum length is reached the marker is written and a
+ * TruncatedException thrown, ending the rendering early.
+ */
+class ToStringWriter implements Appendable {
+
+	/**
+	 * Written in place of output omitted due to a limit.
+	 */
+	static final String TRUNCATED = "...";
+
+	private final Appendable out;
+	private final int maxDepth;
+	private final int maxElements;
+	private final int maxLength;
+	private int depth;
+	private int peakDepth;
+	private int length;
+
+	ToStringWriter(Appendable out, LEHConfiguration configuration) {
+		this.out = out;
+		this.maxDepth = configuration.getMaxToStringDepth();
+		this.maxElements = configuration.getMaxToStringElements();
+		this.maxLength = configuration.getMaxToStringLength();
+	}
+
+	public ToStringWriter append(CharSequence csq) throws IOException {
+		CharSequence value = csq == null ? "null" : csq;
+		return append(value, 0, value.length());
+	}
+
+	public ToStringWriter append(CharSequence csq, int start, int end) throws IOException {
+		CharSequence value = csq == null ? "null" : csq;
+		int remaining = maxLength - length;
+		if(end - start > remaining){
+			out.append(value, start, start + remaining);
+			length = maxLength;
+			truncated();
+			throw new TruncatedException();
+		}
+		out.append(value, start, end);
+		length += end - start;
+		return this;
+	}
+
+	public ToStringWriter append(char c) throws IOException {
+		if(length == maxLength){
+			truncated();
+			throw new TruncatedException();
+		}
+		out.append(c);
+		length++;
+		return this;
+	}
+
+	/**
+	 * Enters an instance nested one level deeper, unless the maximum depth
+	 * has been reached.
+	 *
+	 * @return true if entered, in which case exit() must follow.
+	 */
+	boolean enter() {
+		if(depth == maxDepth){
+			return false;
+		}
+		depth++;
+		if(depth > peakDepth){
+			peakDepth = depth;
+		}
+		return true;
+	}
+
+	void exit() {
+		depth--;
+	}
+
+	/**
+	 * @return the deepest nesting entered.
+	 */
+	int getPeakDepth() {
+		return peakDepth;
+	}
+
+	/**
+	 * @param count
+	 *            elements of the current collection written so far.
+	 * @return true if no more elements of the current collection are to be
+	 *         written.
+	 */
+	boolean isElementLimit(int count) {
+		return count >= maxElements;
+	}
+
+	/**
+	 * Writes the truncation marker, which does not count toward the maximum
+	 * length.
+	 *
+	 * @throws IOException
+	 */
+	void truncated() throws IOException {
+		out.append(TRUNCATED);
+	}
+
+	/**
+	 * Thrown once the maximum length is reached, ending the rendering.
+	 */
+	static class TruncatedException extends IOException {
+
+		private static final long serialVersionUID = 3190565826425498201L;
+
+	}
+
+}
@@ -0,0 +1,131 @@
+package leh.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread safe cache keyed by reference identity that does not prevent its
+ * keys from being garbage collected. Reads are lock free. Entries whose keys
+ * have been collected are purged as the cache is next accessed.
+ *
+ * Keys are compared by identity rather than equals, so LEHAware keys (or
+ * keys whose equals/hashCode dispatch to LEH) never re-enter LEH on lookup.
+ *
+ * Values are held strongly: a value referencing its own key keeps the entry
+ * alive, so such values should be held through a SoftReference or similar.
+ *
+ * @param <K>
+ * @param <V>
+ */
+class WeakIdentityCache<K, V> {
+
+	private final ConcurrentHashMap<Object, V> map = new ConcurrentHashMap<Object, V>();
+	private final ReferenceQueue<K> queue = new ReferenceQueue<K>();
+
+	V get(K key) {
+		expunge();
+		return map.get(new LookupKey(key));
+	}
+
+	void put(K key, V value) {
+		expunge();
+		map.put(new WeakKey<K>(key, queue), value);
+	}
+
+	/**
+	 * Associates the value with the key unless a value is already present,
+	 * returning the value associated after the call.
+	 *
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	V putIfAbsent(K key, V value) {
+		expunge();
+		V existing = map.putIfAbsent(new WeakKey<K>(key, queue), value);
+		return existing == null ? value : existing;
+	}
+
+	void remove(K key) {
+		expunge();
+		map.remove(new LookupKey(key));
+	}
+
+	int size() {
+		expunge();
+		return map.size();
+	}
+
+	private void expunge() {
+		Object reference;
+		while((reference = queue.poll()) != null){
+			map.remove(reference);
+		}
+	}
+
+	private static interface Key {
+		Object getReferent();
+	}
+
+	/**
+	 * Key stored in the map, hashing by the identity of its referent as it
+	 * was when stored so it can still be located and removed once cleared.
+	 */
+	private static class WeakKey<K> extends WeakReference<K> implements Key {
+
+		final int hashCode;
+
+		WeakKey(K referent, ReferenceQueue<K> queue) {
+			super(referent, queue);
+			this.hashCode = System.identityHashCode(referent);
+		}
+
+		public Object getReferent() {
+			return get();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(obj == this){
+				return true;
+			}
+			Object referent = get();
+			return referent != null && obj instanceof Key && ((Key)obj).getReferent() == referent;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+	}
+
+	/**
+	 * Transient key used to look up entries without registering a reference.
+	 */
+	private static class LookupKey implements Key {
+
+		final Object referent;
+
+		LookupKey(Object referent) {
+			this.referent = referent;
+		}
+
+		public Object getReferent() {
+			return referent;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj == this || (obj instanceof Key && ((Key)obj).getReferent() == referent);
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(referent);
+		}
+
+	}
+
+}